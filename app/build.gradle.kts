@@ -1,3 +1,8 @@
+import groovy.json.JsonSlurper
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
+import java.time.LocalDate
+
 plugins {
     alias(libs.plugins.androidApplication)
     alias(libs.plugins.hiltPlugin)
@@ -33,6 +38,10 @@ android {
     buildFeatures {
         viewBinding = true
     }
+    androidResources {
+        // Catalogue snapshots are memory-mapped, which requires them to be stored uncompressed
+        noCompress += "bin"
+    }
 }
 
 dependencies {
@@ -45,6 +54,9 @@ dependencies {
     implementation(libs.navigation.ui)
     implementation(libs.okHttp)
     testImplementation(libs.junit)
+    testImplementation(libs.okHttpMockWebServer)
+    // org.json of the Android SDK is not available in local unit tests
+    testImplementation(libs.json)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
 
@@ -58,3 +70,136 @@ dependencies {
     testImplementation(libs.hiltAndroidTesting)
     testAnnotationProcessor(libs.hiltCompiler)
 }
+
+/**
+ * Converts the results of the catalogue query of WikidataEventSource (getAllQuery()), saved from
+ * Wikidata Query Service as src/main/snapshot/catalogue-<language>.json, into the binary snapshots
+ * bundled in assets (catalogue-<language>.bin). The format is described in SnapshotEventSource.
+ */
+abstract class GenerateCatalogueSnapshots : DefaultTask() {
+    @get:InputDirectory
+    abstract val fixtureDir: DirectoryProperty
+
+    @get:OutputDirectory
+    abstract val outputDir: DirectoryProperty
+
+    private class SnapshotEvent(val id: Int, val title: String, val month: Int, val dayOfMonth: Int) {
+        // Day of year in a leap year, so that February 29 has its own day
+        val dayOfYear = LocalDate.of(2000, month, dayOfMonth).dayOfYear
+    }
+
+    @TaskAction
+    fun generate() {
+        val output = outputDir.get().asFile
+        output.deleteRecursively()
+        output.mkdirs()
+
+        val fixtures = fixtureDir.get().asFile
+            .listFiles { file -> file.name.matches(Regex("catalogue-[a-z]+\\.json")) }
+            .orEmpty()
+        for (fixture in fixtures) {
+            File(output, fixture.nameWithoutExtension + ".bin").writeBytes(encode(read(fixture)))
+        }
+    }
+
+    private fun read(fixture: File): List<SnapshotEvent> {
+        // {"head": {...}, "results": {"bindings": [...]}}
+        val results = (JsonSlurper().parse(fixture) as Map<*, *>)["results"] as Map<*, *>
+        val events = LinkedHashMap<Int, SnapshotEvent>()
+
+        for (binding in results["bindings"] as List<*>) {
+            fun value(name: String): String =
+                ((binding as Map<*, *>)[name] as Map<*, *>?)?.get("value") as String?
+                    ?: throw GradleException("${fixture.name}: missing value in binding: $name")
+
+            // Example: http://www.wikidata.org/entity/Q5305947 → 5305947
+            val id = value("worldDay").substringAfterLast("/Q").toInt()
+            // Events on several days are stored once, on their first day, as in the local source
+            events.putIfAbsent(id, SnapshotEvent(
+                id, value("worldDayLabel"), value("month").toInt(), value("dayOfMonth").toInt()
+            ))
+        }
+        return events.values.toList()
+    }
+
+    private fun encode(events: List<SnapshotEvent>): ByteArray {
+        val byDate = events.sortedWith(compareBy<SnapshotEvent>({ it.dayOfYear }, { it.id }))
+        val entriesById = byDate.indices.sortedBy { byDate[it].id }
+
+        val pool = ByteArrayOutputStream()
+        val poolOut = DataOutputStream(pool)
+        val titleOffsets = byDate.map { event ->
+            val offset = poolOut.size()
+            val title = event.title.toByteArray(Charsets.UTF_8)
+            if (title.size > 0xFFFF) throw GradleException("Title too long: ${event.title}")
+            poolOut.writeShort(title.size)
+            poolOut.write(title)
+            offset
+        }
+
+        val bytes = ByteArrayOutputStream()
+        DataOutputStream(bytes).use { out ->
+            // Header
+            out.writeInt(0x57444353)  // Magic: "WDCS"
+            out.writeInt(1)           // Format version
+            out.writeInt(byDate.size)
+            out.writeInt(pool.size())
+
+            // Day index: number of events on or before each day of year
+            var count = 0
+            for (day in 0..366) {
+                while (count < byDate.size && byDate[count].dayOfYear <= day) count++
+                out.writeInt(count)
+            }
+
+            // Entries
+            byDate.forEachIndexed { i, event ->
+                out.writeInt(event.id)
+                out.writeInt(titleOffsets[i])
+                out.writeByte(event.month)
+                out.writeByte(event.dayOfMonth)
+                out.writeShort(0)
+            }
+
+            // ID table
+            for (i in entriesById) {
+                out.writeInt(byDate[i].id)
+                out.writeInt(i)
+            }
+
+            // String pool
+            pool.writeTo(out)
+        }
+        return bytes.toByteArray()
+    }
+}
+
+val generateCatalogueSnapshots = tasks.register<GenerateCatalogueSnapshots>(
+    "generateCatalogueSnapshots"
+) {
+    fixtureDir.set(layout.projectDirectory.dir("src/main/snapshot"))
+}
+
+androidComponents {
+    onVariants { variant ->
+        variant.sources.assets?.addGeneratedSourceDirectory(
+            generateCatalogueSnapshots, GenerateCatalogueSnapshots::outputDir
+        )
+    }
+}
+
+// Snapshots of the fixtures of src/test/snapshot, read by SnapshotEventSourceTest
+val generateTestCatalogueSnapshots = tasks.register<GenerateCatalogueSnapshots>(
+    "generateTestCatalogueSnapshots"
+) {
+    fixtureDir.set(layout.projectDirectory.dir("src/test/snapshot"))
+    outputDir.set(layout.buildDirectory.dir("generated/testCatalogueSnapshots"))
+}
+
+tasks.withType<Test>().configureEach {
+    val snapshotDir = generateTestCatalogueSnapshots.flatMap { it.outputDir }
+    inputs.dir(snapshotDir)
+    jvmArgumentProviders.add(CommandLineArgumentProvider {
+        listOf("-DtestCatalogueSnapshotDir=${snapshotDir.get().asFile.path}")
+    })
+}
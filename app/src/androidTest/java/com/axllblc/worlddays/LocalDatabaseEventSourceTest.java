@@ -2,9 +2,11 @@ package com.axllblc.worlddays;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
 import android.content.Context;
+import android.database.SQLException;
 
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import androidx.test.platform.app.InstrumentationRegistry;
@@ -12,6 +14,7 @@ import androidx.test.platform.app.InstrumentationRegistry;
 import com.axllblc.worlddays.data.Event;
 import com.axllblc.worlddays.data.source.LocalDatabaseEventSource;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -19,8 +22,13 @@ import org.junit.runner.RunWith;
 import java.time.LocalDate;
 import java.time.MonthDay;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 @RunWith(AndroidJUnit4.class)
 public class LocalDatabaseEventSourceTest {
@@ -62,6 +70,11 @@ public class LocalDatabaseEventSourceTest {
         source.deleteAll();
     }
 
+    @After
+    public void tearDown() {
+        source.close();
+    }
+
     @Test
     public void emptyDatabase_getAll_returnsEmptyList() {
         assertTrue(source.getAll().isEmpty());
@@ -108,6 +121,36 @@ public class LocalDatabaseEventSourceTest {
         assertTrue(actualEvents.containsAll(events));
     }
 
+    @Test
+    public void getEvents_returnsExistingEvents() {
+        source.insert(detailedEvent1);
+        source.insert(event2);
+
+        List<Event> actualEvents = source.getEvents(
+                Arrays.asList(event1.getId(), event2.getId(), event3.getId()), false
+        );
+        List<Event> actualDetailedEvents = source.getEvents(
+                Arrays.asList(event1.getId(), event2.getId()), true
+        );
+
+        assertEquals(2, actualEvents.size());
+        assertTrue(actualEvents.containsAll(Arrays.asList(event1, event2)));
+        assertEquals(Collections.singletonList(detailedEvent1), actualDetailedEvents);
+    }
+
+    @Test
+    public void getEvents_moreIdsThanQueryArgs_returnsAllEvents() {
+        List<Event> events = new ArrayList<>();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            events.add(new Event("Q" + i, "Event " + i, MonthDay.of(i % 12 + 1, i % 28 + 1)));
+            ids.add("Q" + i);
+        }
+        source.insertAll(events);
+
+        assertEquals(2500, source.getEvents(ids, false).size());
+    }
+
     @Test
     public void getEventsByName_returnsExpectedEvents() {
         List<Event> events = new ArrayList<>(3);
@@ -139,6 +182,46 @@ public class LocalDatabaseEventSourceTest {
         assertTrue(actualEvents.contains(event3));
     }
 
+    @Test
+    public void getEventsByName_matchesWordPrefixes() {
+        List<Event> events = new ArrayList<>(3);
+        events.add(event1);
+        events.add(event2);
+        events.add(event3);
+
+        source.insertAll(events);
+
+        List<Event> actualEvents = source.getEventsByName("world LOG");
+
+        assertEquals(1, actualEvents.size());
+        assertTrue(actualEvents.contains(event3));
+    }
+
+    @Test
+    public void getEventsByName_sortsByRelevance() {
+        Event worldWorldDay = new Event("Q1", "World Day for World Peace", MonthDay.of(1, 2));
+        List<Event> events = new ArrayList<>(3);
+        events.add(event2);
+        events.add(worldWorldDay);
+        events.add(event3);
+
+        source.insertAll(events);
+
+        List<Event> actualEvents = source.getEventsByName("world");
+
+        assertEquals(3, actualEvents.size());
+        assertEquals(worldWorldDay, actualEvents.get(0));
+    }
+
+    @Test
+    public void getEventsByName_afterUpdate_usesNewTitle() {
+        source.insert(event1);
+        source.update(event1.withTitle("Happiness Day"));
+
+        assertTrue(source.getEventsByName("International").isEmpty());
+        assertEquals(1, source.getEventsByName("Happiness day").size());
+    }
+
     @Test
     public void delete() {
         List<Event> events = new ArrayList<>(3);
@@ -172,6 +255,89 @@ public class LocalDatabaseEventSourceTest {
     }
 
 
+    @Test
+    public void insertAll_failureMidBatch_rollsBack() {
+        source.insert(event3);
+
+        List<Event> events = new ArrayList<>(3);
+        events.add(event1);
+        events.add(event2);
+        events.add(event3);  // Already in the database
+
+        assertThrows(SQLException.class, () -> source.insertAll(events));
+
+        List<Event> actualEvents = source.getAll();
+
+        assertEquals(1, actualEvents.size());
+        assertTrue(actualEvents.contains(event3));
+    }
+
+    @Test
+    public void update_insertsMissingEvent() {
+        source.update(event1);
+
+        Optional<Event> actualEvent = source.getEvent(event1.getId(), false);
+
+        assertTrue(actualEvent.isPresent());
+        assertEquals(event1, actualEvent.get());
+    }
+
+    @Test
+    public void update_keepsFavoriteAndDetails() {
+        source.insert(detailedEvent1);
+        source.star(detailedEvent1.getId());
+
+        Event renamedEvent = event1.withTitle("Happiness Day");
+        source.update(renamedEvent);
+
+        Optional<Event> actualEvent = source.getEvent(event1.getId(), true);
+
+        assertTrue(actualEvent.isPresent());
+        assertEquals(detailedEvent1.withTitle("Happiness Day"), actualEvent.get());
+        assertTrue(source.isFavorite(event1.getId()));
+    }
+
+    @Test
+    public void concurrentReadsAndWrites_doNotFail() throws Exception {
+        final int threads = 4;
+        final int eventsPerThread = 100;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads * 2);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            // Writer
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < eventsPerThread; i++) {
+                    Event event = new Event(
+                            "Q" + (thread * eventsPerThread + i),
+                            "Event " + i,
+                            MonthDay.of(i % 12 + 1, i % 28 + 1)
+                    );
+                    source.insert(event);
+                    if (i % 2 == 0) source.star(event.getId());
+                }
+            }));
+            // Reader
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < eventsPerThread; i++) {
+                    source.getAll();
+                    source.getEventsByMonth(i % 12 + 1);
+                    source.getFavorites();
+                }
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            future.get();  // Rethrows exceptions thrown in worker threads
+        }
+        executor.shutdown();
+
+        assertEquals(threads * eventsPerThread, source.getAll().size());
+        assertEquals(threads * eventsPerThread / 2, source.getFavorites().size());
+    }
+
 
 //    getEvent(String, boolean)
 //    getAll()
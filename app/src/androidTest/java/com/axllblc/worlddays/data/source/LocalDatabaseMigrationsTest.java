@@ -0,0 +1,96 @@
+package com.axllblc.worlddays.data.source;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.axllblc.worlddays.data.source.LocalDatabaseEventSource.DBContract;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+
+@RunWith(AndroidJUnit4.class)
+public class LocalDatabaseMigrationsTest {
+    File file;
+    SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        file = context.getDatabasePath("migrations_test.db");
+        SQLiteDatabase.deleteDatabase(file);
+        db = SQLiteDatabase.openOrCreateDatabase(file, null);
+
+        // Schema of version 1
+        db.execSQL("CREATE TABLE events (ID TEXT PRIMARY KEY, TITLE TEXT, MONTH INTEGER, "
+                + "DAY_OF_MONTH INTEGER, WIKIPEDIA_URL TEXT DEFAULT NULL, "
+                + "WIKIPEDIA_INTRO TEXT DEFAULT NULL, INCEPTION TEXT DEFAULT NULL, "
+                + "FOUNDER TEXT DEFAULT NULL, DETAILS_FETCHED BOOLEAN DEFAULT FALSE, "
+                + "USER_FAVORITE BOOLEAN DEFAULT FALSE)");
+        db.execSQL("INSERT INTO events (ID, TITLE, MONTH, DAY_OF_MONTH, USER_FAVORITE) "
+                + "VALUES ('Q5305947', 'International Day of Happiness', 3, 20, 1)");
+        db.setVersion(1);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+        SQLiteDatabase.deleteDatabase(file);
+    }
+
+    @Test
+    public void migrateFromVersion1_keepsEventsAndFavorites() {
+        LocalDatabaseMigrations.migrate(db, 1, LocalDatabaseEventSource.VERSION);
+
+        try (Cursor cursor = db.rawQuery("SELECT * FROM events WHERE ID = 'Q5305947'", null)) {
+            assertTrue(cursor.moveToNext());
+            assertEquals("International Day of Happiness", cursor.getString(
+                    cursor.getColumnIndexOrThrow(DBContract.Events.TITLE.toString())));
+            assertEquals(1, cursor.getInt(
+                    cursor.getColumnIndexOrThrow(DBContract.Events.USER_FAVORITE.toString())));
+            // New columns
+            cursor.getColumnIndexOrThrow(DBContract.Events.CONTENT_HASH.toString());
+            cursor.getColumnIndexOrThrow(DBContract.Events.DETAILS_HASH.toString());
+        }
+    }
+
+    @Test
+    public void migrateFromVersion1_indexesExistingEvents() {
+        LocalDatabaseMigrations.migrate(db, 1, LocalDatabaseEventSource.VERSION);
+
+        assertEquals(1, DatabaseUtils.longForQuery(db,
+                "SELECT COUNT(*) FROM " + DBContract.EventsFts.TABLE_NAME
+                        + " WHERE " + DBContract.EventsFts.TABLE_NAME + " MATCH 'happ*'",
+                null));
+        assertEquals(2, DatabaseUtils.longForQuery(db,
+                "SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' AND name IN (?, ?)",
+                new String[]{
+                        DBContract.Indexes.EVENTS_BY_DATE,
+                        DBContract.Indexes.FAVORITES_BY_DATE
+                }));
+    }
+
+    @Test
+    public void migrateFromVersion1_createsEmptySyncMetadata() {
+        LocalDatabaseMigrations.migrate(db, 1, LocalDatabaseEventSource.VERSION);
+
+        // Existing events have never been fetched
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, DBContract.SyncMetadata.TABLE_NAME));
+        try (Cursor cursor = db.query(DBContract.SyncMetadata.TABLE_NAME,
+                null, null, null, null, null, null)) {
+            cursor.getColumnIndexOrThrow(DBContract.SyncMetadata.VERSION.toString());
+            cursor.getColumnIndexOrThrow(DBContract.SyncMetadata.HIGH_WATER_MARK.toString());
+        }
+    }
+}
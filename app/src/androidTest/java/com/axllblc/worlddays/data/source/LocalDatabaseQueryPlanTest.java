@@ -0,0 +1,119 @@
+package com.axllblc.worlddays.data.source;
+
+import static org.junit.Assert.assertFalse;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks, with {@code EXPLAIN QUERY PLAN}, that the queries used on hot paths use indexes.
+ */
+@RunWith(AndroidJUnit4.class)
+public class LocalDatabaseQueryPlanTest {
+    LocalDatabaseEventSource source;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        source = new LocalDatabaseEventSource(context);
+    }
+
+    @After
+    public void tearDown() {
+        source.close();
+    }
+
+    @Test
+    public void getEventsByMonth_usesIndex() {
+        assertUsesIndex(
+                LocalDatabaseEventSource.BASIC_PROJECTION,
+                LocalDatabaseEventSource.SELECTION_BY_MONTH,
+                LocalDatabaseEventSource.ORDER_BY_DATE,
+                "3"
+        );
+    }
+
+    @Test
+    public void getFavorites_usesIndex() {
+        assertUsesIndex(
+                LocalDatabaseEventSource.BASIC_PROJECTION,
+                LocalDatabaseEventSource.SELECTION_FAVORITES,
+                LocalDatabaseEventSource.ORDER_BY_DATE
+        );
+    }
+
+    @Test
+    public void getEvent_usesIndex() {
+        assertUsesIndex(
+                new String[]{"*"},
+                LocalDatabaseEventSource.SELECTION_BY_ID,
+                null,
+                "Q5305947"
+        );
+    }
+
+    @Test
+    public void isFavorite_usesIndex() {
+        assertUsesIndex(
+                new String[]{LocalDatabaseEventSource.DBContract.Events.ID.toString()},
+                LocalDatabaseEventSource.SELECTION_BY_ID
+                        + " AND " + LocalDatabaseEventSource.SELECTION_FAVORITES,
+                null,
+                "Q5305947"
+        );
+    }
+
+    /**
+     * Asserts that the query neither scans the events table nor sorts rows in a temporary B-tree.
+     */
+    private void assertUsesIndex(String[] columns, String selection, String orderBy,
+                                 String... selectionArgs) {
+        String query = SQLiteQueryBuilder.buildQueryString(
+                false,
+                LocalDatabaseEventSource.DBContract.Events.TABLE_NAME,
+                columns,
+                selection,
+                null,
+                null,
+                orderBy,
+                null
+        );
+
+        List<String> plan = explainQueryPlan(query, selectionArgs);
+
+        for (String step : plan) {
+            boolean fullScan = step.matches("^SCAN (TABLE )?"
+                    + LocalDatabaseEventSource.DBContract.Events.TABLE_NAME + "\\b.*")
+                    && !step.contains("INDEX");
+            assertFalse("Full scan: " + plan, fullScan);
+            assertFalse("Sort in temporary B-tree: " + plan, step.contains("TEMP B-TREE"));
+        }
+    }
+
+    private List<String> explainQueryPlan(String query, String... selectionArgs) {
+        SQLiteDatabase db = source.getReadableDatabase();
+        List<String> plan = new ArrayList<>();
+
+        try (Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + query, selectionArgs)) {
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.add(cursor.getString(detail));
+            }
+        }
+
+        return plan;
+    }
+}
@@ -0,0 +1,158 @@
+package com.axllblc.worlddays.data.source;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.axllblc.worlddays.data.Event;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests of the parser of {@link WikidataEventSource}, which reads responses with
+ * {@link android.util.JsonReader}, not available in local unit tests.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WikidataEventSourceParserTest {
+    /**
+     * Returns the bindings of {@code body}, copied as the consumer's map is reused.
+     */
+    static List<Map<String, String>> readBindings(String body) throws IOException {
+        List<Map<String, String>> bindings = new ArrayList<>();
+        WikidataEventSource.parseBindings(
+                new StringReader(body), binding -> bindings.add(new HashMap<>(binding))
+        );
+        return bindings;
+    }
+
+    static final String DETAILED_EVENT = "{"
+            + "\"worldDay\": {\"type\": \"uri\","
+            + " \"value\": \"http://www.wikidata.org/entity/Q5305947\"},"
+            + "\"worldDayLabel\": {\"xml:lang\": \"en\", \"type\": \"literal\","
+            + " \"value\": \"International Day of Happiness\"},"
+            + "\"month\": {\"datatype\": \"http://www.w3.org/2001/XMLSchema#integer\","
+            + " \"type\": \"literal\", \"value\": \"3\"},"
+            + "\"dayOfMonth\": {\"type\": \"literal\", \"value\": \"20\"},"
+            + "\"article\": {\"type\": \"uri\","
+            + " \"value\": \"https://en.wikipedia.org/wiki/International_Day_of_Happiness\"},"
+            + "\"inception\": {\"datatype\": \"http://www.w3.org/2001/XMLSchema#dateTime\","
+            + " \"type\": \"literal\", \"value\": \"2012-06-28T00:00:00Z\"},"
+            + "\"founderLabel\": {\"xml:lang\": \"en\", \"type\": \"literal\","
+            + " \"value\": \"United Nations General Assembly\"}"
+            + "}";
+
+    /**
+     * Binding without the optional variables of the query.
+     */
+    static final String EVENT_WITHOUT_DETAILS = "{"
+            + "\"worldDay\": {\"type\": \"uri\","
+            + " \"value\": \"http://www.wikidata.org/entity/Q104850441\"},"
+            + "\"worldDayLabel\": {\"xml:lang\": \"en\", \"type\": \"literal\","
+            + " \"value\": \"World Logic Day\"},"
+            + "\"month\": {\"type\": \"literal\", \"value\": \"1\"},"
+            + "\"dayOfMonth\": {\"type\": \"literal\", \"value\": \"14\"}"
+            + "}";
+
+    static String response(String... bindings) {
+        return "{\"head\": {\"vars\": [\"worldDay\", \"worldDayLabel\"]},"
+                + " \"results\": {\"bindings\": [" + String.join(",", bindings) + "]}}";
+    }
+
+    @Test
+    public void readBindings_readsValuesAndSkipsTypesAndLanguages() throws IOException {
+        List<Map<String, String>> bindings = readBindings(response(DETAILED_EVENT));
+
+        assertEquals(1, bindings.size());
+        Map<String, String> binding = bindings.get(0);
+        assertEquals(7, binding.size());
+        assertEquals("http://www.wikidata.org/entity/Q5305947", binding.get("worldDay"));
+        assertEquals("International Day of Happiness", binding.get("worldDayLabel"));
+        assertEquals("3", binding.get("month"));
+        assertEquals("United Nations General Assembly", binding.get("founderLabel"));
+    }
+
+    @Test
+    public void readBindings_skipsUnknownMembers() throws IOException {
+        String body = "{\"head\": {\"vars\": [], \"link\": [\"https://example.org\"]},"
+                + " \"boolean\": null,"
+                + " \"results\": {\"distinct\": false, \"ordered\": true,"
+                + " \"bindings\": [" + EVENT_WITHOUT_DETAILS + "],"
+                + " \"extra\": {\"bindings\": [" + DETAILED_EVENT + "]}}}";
+
+        List<Map<String, String>> bindings = readBindings(body);
+
+        assertEquals(1, bindings.size());
+        assertEquals("World Logic Day", bindings.get(0).get("worldDayLabel"));
+    }
+
+    @Test
+    public void readBindings_emptyBindings_doesNotCallConsumer() throws IOException {
+        assertTrue(readBindings(response()).isEmpty());
+        assertTrue(readBindings("{\"head\": {\"vars\": []}, \"results\": {}}").isEmpty());
+    }
+
+    @Test
+    public void readBindings_doesNotMixBindings() throws IOException {
+        List<Map<String, String>> bindings =
+                readBindings(response(DETAILED_EVENT, EVENT_WITHOUT_DETAILS));
+
+        assertEquals(2, bindings.size());
+        assertEquals(4, bindings.get(1).size());
+    }
+
+    @Test
+    public void bindingToEvent_readsDetails() throws IOException {
+        Map<String, String> binding = readBindings(response(DETAILED_EVENT)).get(0);
+
+        assertEquals(
+                new Event(
+                        "Q5305947",
+                        "International Day of Happiness",
+                        MonthDay.of(3, 20),
+                        "https://en.wikipedia.org/wiki/International_Day_of_Happiness",
+                        null,
+                        LocalDate.of(2012, 6, 28),
+                        "United Nations General Assembly"
+                ),
+                WikidataEventSource.bindingToEvent(binding, true)
+        );
+        assertEquals(
+                new Event("Q5305947", "International Day of Happiness", MonthDay.of(3, 20)),
+                WikidataEventSource.bindingToEvent(binding, false)
+        );
+    }
+
+    @Test
+    public void bindingToEvent_withoutOptionalBindings_hasNoDetails() throws IOException {
+        Map<String, String> binding = readBindings(response(EVENT_WITHOUT_DETAILS)).get(0);
+
+        Event event = WikidataEventSource.bindingToEvent(binding, true);
+
+        assertEquals(
+                new Event("Q104850441", "World Logic Day", MonthDay.of(1, 14),
+                        null, null, null, null),
+                event
+        );
+        assertTrue(event.isDetailed());
+    }
+
+    @Test
+    public void bindingToEvent_missingRequiredBinding_throwsIOException() throws IOException {
+        Map<String, String> binding = readBindings(response(EVENT_WITHOUT_DETAILS)).get(0);
+        binding.remove("month");
+
+        assertThrows(IOException.class, () -> WikidataEventSource.bindingToEvent(binding, false));
+    }
+}
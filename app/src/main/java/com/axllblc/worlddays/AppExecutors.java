@@ -0,0 +1,97 @@
+package com.axllblc.worlddays;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Executors shared by the whole application.
+ * <ul>
+ *     <li>{@link #network()}: tasks which may perform network requests (and disk I/O);</li>
+ *     <li>{@link #disk()}: tasks which only perform disk I/O (local database);</li>
+ *     <li>{@link #prefetch()}: speculative network requests, run one at a time at the lowest
+ *     priority;</li>
+ *     <li>{@link #mainThread()}: tasks which update the UI.</li>
+ * </ul>
+ * Background pools have a bounded number of threads. Their queue depth and active thread count
+ * can be observed with {@link #getQueueDepth(ThreadPoolExecutor)} and
+ * {@link #getActiveCount(ThreadPoolExecutor)}.
+ *
+ * @see com.axllblc.worlddays.di.ExecutorModule
+ */
+public class AppExecutors {
+    private final ThreadPoolExecutor network;
+    private final ThreadPoolExecutor disk;
+    private final ThreadPoolExecutor prefetch;
+    private final Executor mainThread;
+
+    public AppExecutors(ThreadPoolExecutor network,
+                        ThreadPoolExecutor disk,
+                        ThreadPoolExecutor prefetch,
+                        Executor mainThread) {
+        this.network = network;
+        this.disk = disk;
+        this.prefetch = prefetch;
+        this.mainThread = mainThread;
+    }
+
+    /**
+     * Returns the pool for tasks which may perform network requests.
+     */
+    public ThreadPoolExecutor network() {
+        return network;
+    }
+
+    /**
+     * Returns the pool for tasks which only perform disk I/O.
+     */
+    public ThreadPoolExecutor disk() {
+        return disk;
+    }
+
+    /**
+     * Returns the pool for speculative network requests. Tasks should stop when
+     * {@link #isNetworkSaturated()}, so that prefetching never delays requests for visible data.
+     */
+    public ThreadPoolExecutor prefetch() {
+        return prefetch;
+    }
+
+    /**
+     * Returns {@code true} if all the threads of {@link #network()} are busy, or if tasks are
+     * waiting for one.
+     */
+    public boolean isNetworkSaturated() {
+        return getQueueDepth(network) > 0
+                || getActiveCount(network) >= network.getMaximumPoolSize();
+    }
+
+    /**
+     * Returns an executor running tasks on the main thread.
+     */
+    public Executor mainThread() {
+        return mainThread;
+    }
+
+    /**
+     * Returns the number of tasks waiting in the queue of {@code pool}.
+     */
+    public static int getQueueDepth(ThreadPoolExecutor pool) {
+        return pool.getQueue().size();
+    }
+
+    /**
+     * Returns the approximate number of threads of {@code pool} which are running a task.
+     */
+    public static int getActiveCount(ThreadPoolExecutor pool) {
+        return pool.getActiveCount();
+    }
+
+    @Override
+    public String toString() {
+        return "AppExecutors{" +
+                "network=" + getActiveCount(network) + " active, " + getQueueDepth(network) + " queued" +
+                ", disk=" + getActiveCount(disk) + " active, " + getQueueDepth(disk) + " queued" +
+                ", prefetch=" + getActiveCount(prefetch) + " active, " + getQueueDepth(prefetch) + " queued" +
+                '}';
+    }
+}
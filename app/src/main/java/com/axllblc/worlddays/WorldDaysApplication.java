@@ -2,9 +2,26 @@ package com.axllblc.worlddays;
 
 import android.app.Application;
 
+import com.axllblc.worlddays.data.repository.EventRepository;
+
+import javax.inject.Inject;
+
 import dagger.hilt.android.HiltAndroidApp;
 
 @HiltAndroidApp
 public class WorldDaysApplication extends Application {
     public static String USER_AGENT = "WorldDaysApplication/1.0";
+
+    @Inject
+    EventRepository eventRepository;
+    @Inject
+    AppExecutors executors;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        // Sync the whole catalogue in the background, if it has expired
+        executors.network().execute(() -> eventRepository.syncCatalogue(false));
+    }
 }
@@ -0,0 +1,82 @@
+package com.axllblc.worlddays.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Token used to cancel a background task, and the network requests it has started.
+ * <p>
+ * A task runs with a token using {@link #runWith(Runnable)}: code called by this task (such as
+ * data sources) can get the token with {@link #current()}, and register a listener which cancels
+ * its request when {@link #cancel()} is called, and unregister it with
+ * {@link #removeOnCancel(Runnable)} once the request is over.
+ */
+public class CancellationToken {
+    private static final ThreadLocal<CancellationToken> CURRENT = new ThreadLocal<>();
+
+    private boolean cancelled = false;
+    private final List<Runnable> listeners = new ArrayList<>();
+
+    /**
+     * Returns the token of the task running in the current thread, or {@code null}.
+     */
+    public static CancellationToken current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs {@code task} in the current thread, with this token as {@link #current()}.
+     */
+    public void runWith(Runnable task) {
+        CancellationToken previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            task.run();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Cancels the task: calls all the registered listeners. Does nothing if the task has already
+     * been cancelled.
+     */
+    public void cancel() {
+        List<Runnable> listenersToCall;
+        synchronized (this) {
+            if (cancelled) return;
+            cancelled = true;
+            listenersToCall = new ArrayList<>(listeners);
+            listeners.clear();
+        }
+        listenersToCall.forEach(Runnable::run);
+    }
+
+    /**
+     * Registers a listener, called when the task is cancelled. If the task has already been
+     * cancelled, the listener is called immediately.
+     * @param listener Listener, such as {@code call::cancel}
+     */
+    public void onCancel(Runnable listener) {
+        synchronized (this) {
+            if (!cancelled) {
+                listeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    /**
+     * Unregisters a listener registered with {@link #onCancel(Runnable)}. Does nothing if it is
+     * not registered (for instance, if it has already been called).
+     * @param listener The registered instance
+     */
+    public synchronized void removeOnCancel(Runnable listener) {
+        listeners.remove(listener);
+    }
+}
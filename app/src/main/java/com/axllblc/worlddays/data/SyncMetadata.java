@@ -0,0 +1,106 @@
+package com.axllblc.worlddays.data;
+
+import java.util.Locale;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+/**
+ * Information about the last time the result of a query was fetched from the remote source.
+ *
+ * @see #all()
+ * @see #month(int)
+ * @see #event(String, boolean)
+ * @see #search(String)
+ * @see #catalogue()
+ */
+@AllArgsConstructor
+@Getter
+@ToString
+@EqualsAndHashCode
+public class SyncMetadata {
+    /**
+     * Outcome of a fetch.
+     */
+    public enum Outcome {
+        SUCCESS,
+        ERROR,
+    }
+
+    /**
+     * Key of the query, such as "month:3".
+     */
+    private final @NonNull String queryKey;
+    /**
+     * Time of the last fetch, in milliseconds since the epoch.
+     */
+    private final long lastFetched;
+    /**
+     * Outcome of the last fetch.
+     */
+    private final @NonNull Outcome outcome;
+    /**
+     * ETag of the last successful response.
+     * [optional]
+     */
+    private final String etag;
+    /**
+     * Version of the data fetched by this query, incremented by each successful fetch. Only used
+     * by {@link #catalogue()}.
+     * [optional]
+     */
+    private final Long version;
+    /**
+     * Latest modification time of the fetched data, in milliseconds since the epoch, as reported
+     * by the remote source. Later fetches may only ask for data modified since then. Only used by
+     * {@link #catalogue()}.
+     * [optional]
+     */
+    private final Long highWaterMark;
+    /**
+     * Time of the last fetch of all the data, rather than of the data modified since
+     * {@link #highWaterMark}, in milliseconds since the epoch. Only used by {@link #catalogue()}.
+     * [optional]
+     */
+    private final Long lastFullSync;
+
+    /**
+     * Returns the key of the query for all events.
+     */
+    public static String all() {
+        return "all";
+    }
+
+    /**
+     * Returns the key of the query for the events of {@code month}.
+     */
+    public static String month(int month) {
+        return "month:" + month;
+    }
+
+    /**
+     * Returns the key of the query for the event with given ID.
+     */
+    public static String event(String id, boolean withDetails) {
+        return (withDetails ? "event-details:" : "event:") + id;
+    }
+
+    /**
+     * Returns the key of the query for the whole catalogue of events, fetched at once. Titles
+     * are in the language of the device, so each language has its own key: the catalogue is
+     * fetched again when the language changes.
+     */
+    public static String catalogue() {
+        return "catalogue:" + Locale.getDefault().getLanguage();
+    }
+
+    /**
+     * Returns the key of the query for events matching {@code str}.
+     */
+    public static String search(String str) {
+        return "search:" + str.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,262 @@
+package com.axllblc.worlddays.data.repository;
+
+import com.axllblc.worlddays.data.Event;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * In-memory cache of events, in front of the local database:
+ * <ul>
+ *     <li>events, by ID;</li>
+ *     <li>lists of events, by month;</li>
+ *     <li>favorite events.</li>
+ * </ul>
+ * Events and month lists are evicted in least-recently-used order once their maximum number of
+ * entries is reached. The cache must be invalidated when the underlying data changes, after the
+ * change has been written.
+ * <p>
+ * Values read from the underlying data are put with the {@link #getGeneration() generation} of
+ * the cache at the time of the read: if the cache has been invalidated meanwhile, the value may
+ * predate a change, and it is dropped.
+ * <p>
+ * Lookups return {@code null} on a miss. Hits and misses are counted, see {@link #getHitCount()}
+ * and {@link #getMissCount()}.
+ */
+@Singleton
+public class EventCache {
+    /**
+     * Default maximum number of events cached by ID.
+     */
+    static final int DEFAULT_MAX_EVENTS = 256;
+    /**
+     * Default maximum number of month lists.
+     */
+    static final int DEFAULT_MAX_MONTHS = 6;
+
+    private final Map<String, Event> events;
+    private final Map<Integer, List<Event>> months;
+    private List<Event> favorites = null;
+    private Set<String> favoriteIds = null;
+    /**
+     * Incremented by each invalidation.
+     */
+    private long generation = 0;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    @Inject
+    public EventCache() {
+        this(DEFAULT_MAX_EVENTS, DEFAULT_MAX_MONTHS);
+    }
+
+    public EventCache(int maxEvents, int maxMonths) {
+        this.events = newLruMap(maxEvents);
+        this.months = newLruMap(maxMonths);
+    }
+
+    private static <K, V> Map<K, V> newLruMap(int maxSize) {
+        return new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+
+    // Events
+
+    /**
+     * Returns the cached event with given ID, or {@code null}.
+     * @param withDetails {@code true} if the event must be detailed
+     */
+    public synchronized Event getEvent(String id, boolean withDetails) {
+        Event event = events.get(id);
+        if (event != null && (event.isDetailed() || !withDetails)) {
+            return hit(event);
+        } else {
+            return miss();
+        }
+    }
+
+    /**
+     * Caches {@code event}, unless the cache has been invalidated since {@code generation}.
+     * @param generation Value of {@link #getGeneration()} before {@code event} was read
+     */
+    public synchronized void putEvent(Event event, long generation) {
+        if (generation != this.generation) return;
+
+        Event cachedEvent = events.get(event.getId());
+        // Do not replace a detailed event with a less complete one
+        if (cachedEvent == null || event.isDetailed() || !cachedEvent.isDetailed()) {
+            events.put(event.getId(), event);
+        }
+    }
+
+
+    // Months
+
+    /**
+     * Returns the cached list of events of {@code month}, or {@code null}.
+     */
+    public synchronized List<Event> getEventsByMonth(int month) {
+        List<Event> list = months.get(month);
+        return list != null ? hit(list) : miss();
+    }
+
+    /**
+     * Caches the list of events of {@code month}, unless the cache has been invalidated since
+     * {@code generation}.
+     * @param generation Value of {@link #getGeneration()} before {@code list} was read
+     */
+    public synchronized void putEventsByMonth(int month, List<Event> list, long generation) {
+        if (generation != this.generation) return;
+
+        months.put(month, Collections.unmodifiableList(new ArrayList<>(list)));
+    }
+
+
+    // Favorites
+
+    /**
+     * Returns the cached list of favorite events, or {@code null}.
+     */
+    public synchronized List<Event> getFavorites() {
+        return favorites != null ? hit(favorites) : miss();
+    }
+
+    /**
+     * Returns whether the event with given ID is a favorite, or {@code null} if the favorites
+     * are not cached.
+     */
+    public synchronized Boolean isFavorite(String eventId) {
+        return favoriteIds != null ? hit(favoriteIds.contains(eventId)) : miss();
+    }
+
+    /**
+     * Caches the list of favorite events, unless the cache has been invalidated since
+     * {@code generation}.
+     * @param generation Value of {@link #getGeneration()} before {@code list} was read
+     */
+    public synchronized void putFavorites(List<Event> list, long generation) {
+        if (generation != this.generation) return;
+
+        favorites = Collections.unmodifiableList(new ArrayList<>(list));
+        favoriteIds = new HashSet<>();
+        for (Event event : list) {
+            favoriteIds.add(event.getId());
+        }
+    }
+
+
+    // Invalidation
+
+    /**
+     * Returns the generation of the cache, incremented by each invalidation. It must be read
+     * before reading the values to put in the cache.
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Invalidates the cached favorites.
+     */
+    public synchronized void invalidateFavorites() {
+        generation++;
+        favorites = null;
+        favoriteIds = null;
+    }
+
+    /**
+     * Invalidates the events with given IDs (such as deleted events), and the lists which
+     * contain them.
+     */
+    public synchronized void invalidateEvents(Collection<String> ids) {
+        generation++;
+        for (String id : ids) {
+            events.remove(id);
+        }
+        invalidateListsContaining(new HashSet<>(ids));
+    }
+
+    /**
+     * Invalidates the given events, which have been updated, and the lists which contain them:
+     * the lists of their former month, and of their new one.
+     */
+    public synchronized void invalidateUpdatedEvents(Collection<Event> updatedEvents) {
+        Set<String> ids = new HashSet<>();
+        for (Event event : updatedEvents) {
+            ids.add(event.getId());
+            months.remove(event.getMonthDay().getMonthValue());
+        }
+        invalidateEvents(ids);
+    }
+
+    /**
+     * Invalidates the month lists and favorites which contain any of {@code ids}. Updates keep
+     * the favorite status of events, so other events cannot join the favorites.
+     */
+    private void invalidateListsContaining(Set<String> ids) {
+        months.values().removeIf(list -> {
+            for (Event event : list) {
+                if (ids.contains(event.getId())) return true;
+            }
+            return false;
+        });
+        if (favoriteIds != null && !Collections.disjoint(favoriteIds, ids)) {
+            favorites = null;
+            favoriteIds = null;
+        }
+    }
+
+    /**
+     * Invalidates the whole cache.
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        events.clear();
+        months.clear();
+        favorites = null;
+        favoriteIds = null;
+    }
+
+
+    // Statistics
+
+    /**
+     * Returns the number of lookups which found a cached value.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns the number of lookups which did not find a cached value.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    private <T> T hit(T value) {
+        hitCount.incrementAndGet();
+        return value;
+    }
+
+    private <T> T miss() {
+        missCount.incrementAndGet();
+        return null;
+    }
+}
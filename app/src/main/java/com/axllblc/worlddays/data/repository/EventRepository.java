@@ -3,15 +3,100 @@ package com.axllblc.worlddays.data.repository;
 import com.axllblc.worlddays.data.Event;
 import com.axllblc.worlddays.data.Result;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface EventRepository {
     Result<Optional<Event>> getEvent(String id, boolean withDetails, boolean refresh);
+
+    /**
+     * Variant of {@link #getEvent(String, boolean, boolean)} for detailed events, which does not
+     * wait for the intro of the Wikipedia article. If the event is fetched from the remote
+     * source, it is returned as soon as its details are available; its intro, fetched at the
+     * same time, is passed to {@code onIntroFetched} afterwards.
+     *
+     * @param onIntroFetched Called, from a background thread, with the event and its intro, if
+     *                       the intro was not available when the event was returned
+     */
+    Result<Optional<Event>> getDetailedEvent(String id, boolean refresh,
+                                             Consumer<Event> onIntroFetched);
+
+    /**
+     * Returns the events with given IDs. Events missing from the local source (or all of them,
+     * if {@code refresh} is {@code true}) are fetched from the remote source in a single batch,
+     * then stored in the local source.
+     *
+     * @return The events, in the order of {@code ids}. IDs which do not exist are omitted.
+     */
+    Result<List<Event>> getEvents(Collection<String> ids, boolean withDetails, boolean refresh);
+
     Result<List<Event>> getAll(boolean refresh);
     Result<List<Event>> getEventsByName(String str, boolean refresh) throws Exception;
     Result<List<Event>> getEventsByMonth(int month, boolean refresh) throws Exception;
 
+    /**
+     * Paged variant of {@link #getAll(boolean)}. Events fetched from the remote source are
+     * fetched page by page: each page is stored in the local source, then the events received so
+     * far are passed to {@code onPage}, so that they can be shown before the last page arrives.
+     *
+     * @param onPage Called, from the calling thread, with the events received so far, after each
+     *               page. Not called if the events are read from the local source only.
+     * @return All the events, once the last page has been received
+     */
+    Result<List<Event>> getAll(boolean refresh, Consumer<List<Event>> onPage);
+
+    /**
+     * Paged variant of {@link #getEventsByName(String, boolean)}.
+     * See {@link #getAll(boolean, Consumer)}.
+     */
+    Result<List<Event>> getEventsByName(String str, boolean refresh,
+                                        Consumer<List<Event>> onPage);
+
+    /**
+     * Stale-while-revalidate variant of {@link #getEvent(String, boolean, boolean)}: returns the
+     * local copy of the event immediately, then refreshes it from the remote source in the
+     * background. If the event is not available locally, waits for the remote source, unless a
+     * fresh fetch of the event did not find it.
+     *
+     * @param onRevalidated Called, from a background thread, with the refreshed event if it
+     *                      differs from the returned one. It may be called before this method
+     *                      returns: callers must not let the returned value replace it.
+     */
+    Result<Optional<Event>> getEvent(String id, boolean withDetails,
+                                     Consumer<Optional<Event>> onRevalidated);
+
+    /**
+     * Stale-while-revalidate variant of {@link #getEventsByMonth(int, boolean)}: returns the
+     * local list of events immediately, then refreshes it from the remote source in the
+     * background. If no event is available locally, waits for the remote source. Until the
+     * catalogue has been synced (see {@link #syncCatalogue(boolean)}), events of the bundled
+     * snapshot are returned instead of waiting.
+     *
+     * @param onRevalidated Called, from a background thread, with the refreshed list if it
+     *                      differs from the returned one. It may be called before this method
+     *                      returns: callers must not let the returned value replace it.
+     */
+    Result<List<Event>> getEventsByMonth(int month, Consumer<List<Event>> onRevalidated);
+
+    /**
+     * Fetches the whole catalogue of events from the remote source in a single query, and stores
+     * it in the local source with a new version. Once the catalogue has been synced, following
+     * syncs are incremental if the remote source is a
+     * {@link com.axllblc.worlddays.data.source.DeltaEventSource}: only the events modified
+     * since the previous sync, and the list of IDs, are fetched; the whole catalogue is still
+     * fetched periodically, and after a change of the language of the device. Until the
+     * catalogue expires (see {@link RefreshPolicy}), {@link #getAll(boolean)},
+     * {@link #getEventsByName(String, boolean)} and {@link #getEventsByMonth(int, boolean)} are
+     * answered by the local source only, unless {@code refresh} is {@code true}.
+     *
+     * @param force {@code true} to fetch the whole catalogue, even if it has not expired
+     * @return The version of the local catalogue. In case of error, the version of the previous
+     * catalogue is kept, and returned as fallback if there is one.
+     */
+    Result<Long> syncCatalogue(boolean force);
+
     List<Event> getFavorites();
     boolean isFavorite(String eventId);
     void star(String eventId);
@@ -1,42 +1,133 @@
 package com.axllblc.worlddays.data.repository;
 
+import com.axllblc.worlddays.AppExecutors;
+import com.axllblc.worlddays.data.CancellationToken;
 import com.axllblc.worlddays.data.Event;
 import com.axllblc.worlddays.data.Result;
+import com.axllblc.worlddays.data.SyncMetadata;
+import com.axllblc.worlddays.data.source.DeltaEventSource;
 import com.axllblc.worlddays.data.source.ReadWriteEventSource;
 import com.axllblc.worlddays.data.source.ReadableEventSource;
 import com.axllblc.worlddays.data.source.WikipediaIntroSource;
 import com.axllblc.worlddays.di.Qualifiers;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import javax.inject.Inject;
 
 public class EventRepositoryImpl implements EventRepository {
+    /**
+     * Number of events per page, for paged queries (see {@link #getAll(boolean, Consumer)}).
+     * The remote source evaluates its whole query again for each page, so pages are large: the
+     * catalogue fits in a few of them.
+     */
+    public static final int PAGE_SIZE = 500;
+
+    /**
+     * Margin subtracted from the high-water mark of the catalogue by incremental syncs (see
+     * {@link #syncCatalogue(boolean)}). Edits reach Wikidata Query Service with some lag, and
+     * the mark of a full sync comes from the clock of the device.
+     */
+    public static final Duration DELTA_OVERLAP = Duration.ofDays(1);
+
+    /**
+     * Maximum time between two full syncs of the catalogue (see {@link #syncCatalogue(boolean)}).
+     * Incremental syncs miss some changes, such as edits of the labels of date items, which do
+     * not change the modification time of the events.
+     */
+    public static final Duration FULL_SYNC_INTERVAL = Duration.ofDays(30);
+
     ReadableEventSource remoteEventSource;
     ReadWriteEventSource localEventSource;
+    ReadableEventSource snapshotEventSource;
     WikipediaIntroSource wikipediaIntroSource;
+    EventCache cache;
+    AppExecutors executors;
+    RefreshPolicy refreshPolicy;
 
     @Inject
     public EventRepositoryImpl(
             @Qualifiers.WikidataEventSource ReadableEventSource remoteEventSource,
             @Qualifiers.LocalDatabaseEventSource ReadWriteEventSource localEventSource,
-            WikipediaIntroSource wikipediaIntroSource
+            @Qualifiers.SnapshotEventSource ReadableEventSource snapshotEventSource,
+            WikipediaIntroSource wikipediaIntroSource,
+            EventCache cache,
+            AppExecutors executors,
+            RefreshPolicy refreshPolicy
     ) {
         this.remoteEventSource = remoteEventSource;
         this.localEventSource = localEventSource;
+        this.snapshotEventSource = snapshotEventSource;
         this.wikipediaIntroSource = wikipediaIntroSource;
+        this.cache = cache;
+        this.executors = executors;
+        this.refreshPolicy = refreshPolicy;
     }
 
     @Override
     public Result<Optional<Event>> getEvent(String id, boolean withDetails, boolean refresh) {
+        return getEvent(id, withDetails, refresh, null);
+    }
+
+    @Override
+    public Result<Optional<Event>> getDetailedEvent(String id, boolean refresh,
+                                                    Consumer<Event> onIntroFetched) {
+        return getEvent(id, true, refresh, Objects.requireNonNull(onIntroFetched));
+    }
+
+    /**
+     * Returns the event with given ID.
+     * <p>
+     * When a detailed event is fetched from the remote source, the intro of the Wikipedia article
+     * already known by the local source, if any, is fetched at the same time as the event.
+     *
+     * @param onIntroFetched If {@code null}, the returned event contains its intro. Otherwise,
+     *                       the event is returned as soon as it has been fetched, and this
+     *                       consumer is called later with the event and its intro, unless the
+     *                       intro is already known.
+     */
+    private Result<Optional<Event>> getEvent(String id, boolean withDetails, boolean refresh,
+                                             Consumer<Event> onIntroFetched) {
         try {
+            if (!refresh) {
+                // Fetch from cache
+                Event cachedEvent = cache.getEvent(id, withDetails);
+                if (cachedEvent != null) return Result.success(Optional.of(cachedEvent));
+            }
+
             // Fetch from local database
+            long generation = cache.getGeneration();
             Optional<Event> eventFromLocalSource = localEventSource.getEvent(id, withDetails);
 
-            if (refresh || !eventFromLocalSource.isPresent()) {
+            if (refresh || shouldFetchEvent(id, withDetails, eventFromLocalSource.isPresent())) {
+                String knownURL = eventFromLocalSource.map(Event::getWikipediaURL).orElse(null);
+                IntroFetch knownIntro = null;
+                if (withDetails && knownURL != null) {
+                    // Fetch the intro while the event is fetched
+                    knownIntro = new IntroFetch(knownURL);
+                    knownIntro.start();
+                }
+
                 // Fetch from remote source
                 Optional<Event> eventFromRemoteSource;
+                IntroFetch pendingIntro = null;
                 try {
                     eventFromRemoteSource = remoteEventSource.getEvent(id, withDetails);
 
@@ -44,18 +135,26 @@ public class EventRepositoryImpl implements EventRepository {
                             && eventFromRemoteSource.isPresent()
                             && eventFromRemoteSource.get().getWikipediaURL() != null
                     ) {
-                        // Fetch intro
-                        String intro = wikipediaIntroSource.getArticleIntro(
-                                eventFromRemoteSource.get().getWikipediaURL()
-                        ).orNull();
-
-                        if (intro != null) {
-                            eventFromRemoteSource = Optional.of(
-                                    eventFromRemoteSource.get().withWikipediaIntro(intro)
-                            );
+                        Event event = eventFromRemoteSource.get();
+                        IntroFetch introFetch = event.getWikipediaURL().equals(knownURL)
+                                ? knownIntro
+                                : new IntroFetch(event.getWikipediaURL());
+
+                        if (onIntroFetched == null || introFetch.isDone()) {
+                            event = withIntro(event, introFetch.await());
+                        } else {
+                            // Do not wait for the intro: keep the local one meanwhile, if the
+                            // article has not changed
+                            introFetch.start();
+                            event = event.withWikipediaIntro(introFetch == knownIntro
+                                    ? eventFromLocalSource.get().getWikipediaIntro()
+                                    : null);
+                            pendingIntro = introFetch;
                         }
+                        eventFromRemoteSource = Optional.of(event);
                     }
                 } catch (Exception e) {
+                    recordFetch(SyncMetadata.event(id, withDetails), false);
                     return Result.error(e, eventFromLocalSource);
                 }
 
@@ -63,9 +162,24 @@ public class EventRepositoryImpl implements EventRepository {
                         eventFromRemoteSource.orElse(null),
                         eventFromLocalSource.orElse(null)
                 );
-
+                recordFetch(SyncMetadata.event(id, withDetails), true);
+
+                // Not cached: it may already have been replaced by a newer fetch
+                if (pendingIntro != null) {
+                    // Registered after the event has been stored, so that it is not overwritten
+                    Event event = eventFromRemoteSource.get();
+                    pendingIntro.thenAccept(intro -> {
+                        if (intro == null || intro.equals(event.getWikipediaIntro())) return;
+
+                        Event eventWithIntro = event.withWikipediaIntro(intro);
+                        merge(eventWithIntro, event);
+                        onIntroFetched.accept(eventWithIntro);
+                    });
+                }
                 return Result.success(eventFromRemoteSource);
             } else {
+                // Empty if the event was not found by a fresh fetch, or deleted since
+                eventFromLocalSource.ifPresent(event -> cache.putEvent(event, generation));
                 return Result.success(eventFromLocalSource);
             }
         } catch (Exception e) {
@@ -73,21 +187,188 @@ public class EventRepositoryImpl implements EventRepository {
         }
     }
 
+    /**
+     * Fetch of the intro of a Wikipedia article, which can run in the background.
+     * <p>
+     * The fetch runs only once: either in {@link AppExecutors#network()}, once
+     * {@link #start() started}, or in the thread calling {@link #await()} if it has not begun yet.
+     * Waiting thus never depends on a free thread of the pool.
+     */
+    private class IntroFetch {
+        private final String articleURL;
+        private final AtomicBoolean claimed = new AtomicBoolean(false);
+        private final CompletableFuture<String> intro = new CompletableFuture<>();
+
+        IntroFetch(String articleURL) {
+            this.articleURL = articleURL;
+        }
+
+        /**
+         * Starts the fetch in the background. It is cancelled with the task calling this method,
+         * if any (see {@link CancellationToken#current()}).
+         */
+        void start() {
+            CancellationToken cancellationToken = CancellationToken.current();
+            executors.network().execute(() -> {
+                if (cancellationToken == null) {
+                    run();
+                } else if (!cancellationToken.isCancelled()) {
+                    cancellationToken.runWith(this::run);
+                }
+            });
+        }
+
+        private void run() {
+            if (!claimed.compareAndSet(false, true)) return;
+
+            String result = null;
+            try {
+                result = wikipediaIntroSource.getArticleIntro(articleURL).orNull();
+            } finally {
+                intro.complete(result);
+            }
+        }
+
+        boolean isDone() {
+            return intro.isDone();
+        }
+
+        /**
+         * Returns the intro, or {@code null} if it could not be fetched.
+         */
+        String await() {
+            run();
+            return intro.join();
+        }
+
+        /**
+         * Calls {@code action} with the intro (or {@code null}) once it has been fetched.
+         */
+        void thenAccept(Consumer<String> action) {
+            intro.thenAccept(action);
+        }
+    }
+
+    /**
+     * Returns {@code event} with given intro, if it is not {@code null}.
+     */
+    private static Event withIntro(Event event, String intro) {
+        return intro != null ? event.withWikipediaIntro(intro) : event;
+    }
+
+    @Override
+    public Result<List<Event>> getEvents(Collection<String> ids, boolean withDetails,
+                                         boolean refresh) {
+        try {
+            Set<String> distinctIds = new LinkedHashSet<>(ids);
+            Map<String, Event> eventsById = new HashMap<>(distinctIds.size() * 2);
+
+            // Fetch from cache, then from local database
+            List<String> idsNotCached = new ArrayList<>();
+            for (String id : distinctIds) {
+                Event cachedEvent = refresh ? null : cache.getEvent(id, withDetails);
+                if (cachedEvent != null) {
+                    eventsById.put(id, cachedEvent);
+                } else {
+                    idsNotCached.add(id);
+                }
+            }
+            if (!idsNotCached.isEmpty()) {
+                long generation = cache.getGeneration();
+                for (Event event : localEventSource.getEvents(idsNotCached, withDetails)) {
+                    eventsById.put(event.getId(), event);
+                    cache.putEvent(event, generation);
+                }
+            }
+
+            Set<String> idsToFetch = new LinkedHashSet<>(distinctIds);
+            if (!refresh) idsToFetch.removeAll(eventsById.keySet());
+
+            if (!idsToFetch.isEmpty()) {
+                // Fetch from remote source, in a single batch
+                List<Event> eventsFromRemoteSource;
+                try {
+                    eventsFromRemoteSource = remoteEventSource.getEvents(idsToFetch, withDetails);
+                    if (withDetails) eventsFromRemoteSource = withIntros(eventsFromRemoteSource);
+                } catch (Exception e) {
+                    return Result.error(e, inOrder(distinctIds, eventsById));
+                }
+
+                if (!eventsFromRemoteSource.isEmpty()) {
+                    // Updates insert missing events, and keep favorites
+                    localEventSource.applyChanges(
+                            Collections.emptyList(), eventsFromRemoteSource, Collections.emptyList()
+                    );
+
+                    for (Event event : eventsFromRemoteSource) {
+                        eventsById.put(event.getId(), event);
+                    }
+                    cache.invalidateUpdatedEvents(eventsFromRemoteSource);
+                }
+            }
+
+            return Result.success(inOrder(distinctIds, eventsById));
+        } catch (Exception e) {
+            return Result.error(e);
+        }
+    }
+
+    /**
+     * Returns the events of {@code eventsById}, in the order of {@code ids}.
+     */
+    private static List<Event> inOrder(Collection<String> ids, Map<String, Event> eventsById) {
+        List<Event> events = new ArrayList<>(eventsById.size());
+        for (String id : ids) {
+            Event event = eventsById.get(id);
+            if (event != null) events.add(event);
+        }
+        return events;
+    }
+
+    /**
+     * Returns {@code events}, with the intro of their Wikipedia article. Intros are fetched in
+     * batches (see {@link WikipediaIntroSource#getArticleIntros(Collection)}); events whose intro
+     * could not be fetched are returned without it.
+     */
+    private List<Event> withIntros(List<Event> events) {
+        List<String> articleURLs = new ArrayList<>();
+        for (Event event : events) {
+            if (event.getWikipediaURL() != null) articleURLs.add(event.getWikipediaURL());
+        }
+        if (articleURLs.isEmpty()) return events;
+
+        Map<String, String> intros = wikipediaIntroSource.getArticleIntros(articleURLs)
+                .orElse(Collections.emptyMap());
+
+        List<Event> eventsWithIntros = new ArrayList<>(events.size());
+        for (Event event : events) {
+            String intro = event.getWikipediaURL() != null
+                    ? intros.get(event.getWikipediaURL())
+                    : null;
+            eventsWithIntros.add(intro != null ? event.withWikipediaIntro(intro) : event);
+        }
+        return eventsWithIntros;
+    }
+
     @Override
     public Result<List<Event>> getAll(boolean refresh) {
         try {
             List<Event> eventsFromLocalSource = localEventSource.getAll();
 
-            if (refresh || eventsFromLocalSource.isEmpty()) {
+            String queryKey = SyncMetadata.all();
+
+            if (refresh || shouldFetchList(queryKey, !eventsFromLocalSource.isEmpty())) {
                 // Fetch from remote source
                 List<Event> eventsFromRemoteSource;
                 try {
                     eventsFromRemoteSource = remoteEventSource.getAll();
                 } catch (Exception e) {
+                    recordFetch(queryKey, false);
                     return Result.error(e, eventsFromLocalSource);
                 }
 
                 merge(eventsFromRemoteSource, eventsFromLocalSource);
+                recordFetch(queryKey, true);
 
                 return Result.success(eventsFromRemoteSource);
             } else {
@@ -103,16 +384,22 @@ public class EventRepositoryImpl implements EventRepository {
         try {
             List<Event> eventsFromLocalSource = localEventSource.getEventsByName(str);
 
-            if (refresh || eventsFromLocalSource.isEmpty()) {
+            String queryKey = SyncMetadata.search(str);
+
+            if (refresh || shouldFetchList(queryKey, !eventsFromLocalSource.isEmpty())) {
                 // Fetch from remote source
                 List<Event> eventsFromRemoteSource;
                 try {
                     eventsFromRemoteSource = remoteEventSource.getEventsByName(str);
                 } catch (Exception e) {
+                    recordFetch(queryKey, false);
                     return Result.error(e, eventsFromLocalSource);
                 }
 
-                merge(eventsFromRemoteSource, eventsFromLocalSource);
+                // The local search does not match the same events as the remote one (prefixes of
+                // words, diacritics): events are only upserted, never deleted
+                upsert(eventsFromRemoteSource, eventsFromLocalSource);
+                recordFetch(queryKey, true);
 
                 return Result.success(eventsFromRemoteSource);
             } else {
@@ -123,24 +410,146 @@ public class EventRepositoryImpl implements EventRepository {
         }
     }
 
+    @Override
+    public Result<List<Event>> getAll(boolean refresh, Consumer<List<Event>> onPage) {
+        return getListPaged(
+                SyncMetadata.all(),
+                refresh,
+                true,
+                ReadableEventSource::getAll,
+                (source, onSourcePage) -> source.getAllPaged(PAGE_SIZE, onSourcePage),
+                onPage
+        );
+    }
+
+    @Override
+    public Result<List<Event>> getEventsByName(String str, boolean refresh,
+                                               Consumer<List<Event>> onPage) {
+        return getListPaged(
+                SyncMetadata.search(str),
+                refresh,
+                false,  // See getEventsByName(String, boolean)
+                source -> source.getEventsByName(str),
+                (source, onSourcePage) -> source.getEventsByNamePaged(str, PAGE_SIZE, onSourcePage),
+                onPage
+        );
+    }
+
+    /**
+     * Query of a list of events.
+     */
+    private interface ListQuery {
+        List<Event> run(ReadableEventSource source) throws Exception;
+    }
+
+    /**
+     * Paged query of a list of events (see {@link ReadableEventSource#getAllPaged}).
+     */
+    private interface PagedListQuery {
+        void run(ReadableEventSource source, Consumer<List<Event>> onPage) throws Exception;
+    }
+
+    /**
+     * Returns the result of a list query. If it must be fetched from the remote source, each page
+     * is merged into the local source as soon as it arrives; if {@code deleteMissing} is
+     * {@code true}, events of the local source which are not in any page are removed once the last
+     * page has arrived.
+     *
+     * @param queryKey Key of the query, such as {@link SyncMetadata#all()}
+     * @param deleteMissing {@code true} if the local and the remote queries match the same events
+     * @param localQuery The query, on the local source
+     * @param remoteQuery The paged query, on the remote source
+     * @param onPage Called with the events received so far, after each page
+     */
+    private Result<List<Event>> getListPaged(String queryKey, boolean refresh,
+                                             boolean deleteMissing, ListQuery localQuery, PagedListQuery remoteQuery,
+                                             Consumer<List<Event>> onPage) {
+        try {
+            List<Event> eventsFromLocalSource = localQuery.run(localEventSource);
+
+            if (!refresh && !shouldFetchList(queryKey, !eventsFromLocalSource.isEmpty()))
+                return Result.success(eventsFromLocalSource);
+
+            Map<String, Event> localEventsById = new HashMap<>(eventsFromLocalSource.size() * 2);
+            for (Event event : eventsFromLocalSource) {
+                localEventsById.put(event.getId(), event);
+            }
+
+            // Fetch from remote source
+            List<Event> eventsFromRemoteSource = new ArrayList<>();
+            Set<String> remoteIds = new HashSet<>();
+            try {
+                remoteQuery.run(remoteEventSource, page -> {
+                    List<Event> newEvents = new ArrayList<>(page.size());
+                    for (Event event : page) {
+                        if (remoteIds.add(event.getId())) newEvents.add(event);  // Not a duplicate
+                    }
+
+                    mergePage(newEvents, localEventsById);
+                    eventsFromRemoteSource.addAll(newEvents);
+                    onPage.accept(Collections.unmodifiableList(
+                            new ArrayList<>(eventsFromRemoteSource)
+                    ));
+                });
+            } catch (Exception e) {
+                recordFetch(queryKey, false);
+                // Pages received before the failure have been stored
+                return Result.error(e, localQuery.run(localEventSource));
+            }
+
+            // Remove events which are not in eventsFromRemoteSource
+            List<String> idsToDelete = new ArrayList<>();
+            if (deleteMissing) {
+                for (String id : localEventsById.keySet()) {
+                    if (!remoteIds.contains(id)) idsToDelete.add(id);
+                }
+            }
+            if (!idsToDelete.isEmpty()) {
+                localEventSource.applyChanges(
+                        idsToDelete, Collections.emptyList(), Collections.emptyList()
+                );
+                cache.invalidateEvents(idsToDelete);
+            }
+            recordFetch(queryKey, true);
+
+            return Result.success(eventsFromRemoteSource);
+        } catch (Exception e) {
+            return Result.error(e);
+        }
+    }
+
     @Override
     public Result<List<Event>> getEventsByMonth(int month, boolean refresh) {
         try {
+            if (!refresh) {
+                // Fetch from cache
+                List<Event> cachedEvents = cache.getEventsByMonth(month);
+                if (cachedEvents != null) return Result.success(cachedEvents);
+            }
+
+            long generation = cache.getGeneration();
             List<Event> eventsFromLocalSource = localEventSource.getEventsByMonth(month);
 
-            if (refresh || eventsFromLocalSource.isEmpty()) {
+            String queryKey = SyncMetadata.month(month);
+
+            if (refresh || shouldFetchList(queryKey, !eventsFromLocalSource.isEmpty())) {
                 // Fetch from remote source
                 List<Event> eventsFromRemoteSource;
                 try {
                     eventsFromRemoteSource = remoteEventSource.getEventsByMonth(month);
                 } catch (Exception e) {
-                    return Result.error(e, eventsFromLocalSource);
+                    recordFetch(queryKey, false);
+                    return Result.error(e, eventsFromLocalSource.isEmpty() && !isCatalogueSynced()
+                            ? snapshotEventSource.getEventsByMonth(month)
+                            : eventsFromLocalSource);
                 }
 
                 merge(eventsFromRemoteSource, eventsFromLocalSource);
+                recordFetch(queryKey, true);
 
                 return Result.success(eventsFromRemoteSource);
             } else {
+                cache.putEventsByMonth(month, eventsFromLocalSource, generation);
                 return Result.success(eventsFromLocalSource);
             }
         } catch (Exception e) {
@@ -148,53 +557,434 @@ public class EventRepositoryImpl implements EventRepository {
         }
     }
 
+    @Override
+    public Result<Optional<Event>> getEvent(String id, boolean withDetails,
+                                            Consumer<Optional<Event>> onRevalidated) {
+        Optional<Event> staleEvent;
+        try {
+            Event cachedEvent = cache.getEvent(id, withDetails);
+            if (cachedEvent != null) {
+                staleEvent = Optional.of(cachedEvent);
+            } else {
+                long generation = cache.getGeneration();
+                staleEvent = localEventSource.getEvent(id, withDetails);
+                staleEvent.ifPresent(event -> cache.putEvent(event, generation));
+            }
+        } catch (Exception e) {
+            return Result.error(e);
+        }
+
+        // Nothing to show: wait for the remote source (but not for the intro), unless the event
+        // was not found by a fresh fetch
+        if (!staleEvent.isPresent()) {
+            return withDetails
+                    ? getDetailedEvent(id, false, event -> onRevalidated.accept(Optional.of(event)))
+                    : getEvent(id, false, false);
+        }
+
+        if (shouldFetchEvent(id, withDetails, true)) revalidate(
+                () -> getEvent(id, withDetails, true),
+                freshEvent -> !freshEvent.equals(staleEvent),
+                onRevalidated
+        );
+        return Result.success(staleEvent);
+    }
+
+    @Override
+    public Result<List<Event>> getEventsByMonth(int month, Consumer<List<Event>> onRevalidated) {
+        List<Event> staleEvents;
+        try {
+            List<Event> cachedEvents = cache.getEventsByMonth(month);
+            if (cachedEvents != null) {
+                staleEvents = cachedEvents;
+            } else {
+                long generation = cache.getGeneration();
+                staleEvents = localEventSource.getEventsByMonth(month);
+                if (!staleEvents.isEmpty())
+                    cache.putEventsByMonth(month, staleEvents, generation);
+            }
+
+            // Before the first sync, show the bundled snapshot rather than waiting
+            if (staleEvents.isEmpty() && !isCatalogueSynced()) {
+                staleEvents = snapshotEventSource.getEventsByMonth(month);
+            }
+        } catch (Exception e) {
+            return Result.error(e);
+        }
+
+        String queryKey = SyncMetadata.month(month);
+
+        // Nothing to show: wait for the remote source, unless the month is known to be empty
+        if (staleEvents.isEmpty())
+            return getEventsByMonth(month, shouldFetchList(queryKey, false));
+
+        List<Event> finalStaleEvents = staleEvents;
+        if (shouldFetchList(queryKey, true)) revalidate(
+                () -> getEventsByMonth(month, true),
+                freshEvents -> !new HashSet<>(freshEvents).equals(new HashSet<>(finalStaleEvents)),
+                onRevalidated
+        );
+        return Result.success(staleEvents);
+    }
+
+    @Override
+    public Result<Long> syncCatalogue(boolean force) {
+        Optional<SyncMetadata> previousSync;
+        try {
+            previousSync = localEventSource.getSyncMetadata(SyncMetadata.catalogue());
+            if (!force && isCatalogueFresh(previousSync))
+                return Result.success(previousSync.get().getVersion());
+        } catch (Exception e) {
+            return Result.error(e);
+        }
+        Long previousVersion = previousSync.map(SyncMetadata::getVersion).orElse(null);
+
+        try {
+            Long previousFullSync = previousSync.map(SyncMetadata::getLastFullSync).orElse(null);
+            boolean incremental = !force
+                    && remoteEventSource instanceof DeltaEventSource
+                    && previousVersion != null
+                    && previousSync.get().getHighWaterMark() != null
+                    && previousFullSync != null
+                    && refreshPolicy.now() - previousFullSync < FULL_SYNC_INTERVAL.toMillis();
+
+            long version;
+            long highWaterMark;
+            long lastFullSync;
+            if (incremental) {
+                DeltaEventSource deltaEventSource = (DeltaEventSource) remoteEventSource;
+                long previousHighWaterMark = previousSync.get().getHighWaterMark();
+
+                DeltaEventSource.ModifiedEvents modifiedEvents =
+                        deltaEventSource.getEventsModifiedSince(Instant
+                                .ofEpochMilli(previousHighWaterMark)
+                                .minus(DELTA_OVERLAP));
+                boolean changed = applyDelta(
+                        modifiedEvents.getEvents(), deltaEventSource.getAllIds()
+                );
+
+                version = changed ? previousVersion + 1 : previousVersion;
+                highWaterMark = modifiedEvents.getLatestModification() != null
+                        ? Math.max(previousHighWaterMark, modifiedEvents.getLatestModification())
+                        : previousHighWaterMark;
+                lastFullSync = previousFullSync;
+            } else {
+                // Time of the start of the sync: events modified later are fetched by the next one
+                highWaterMark = refreshPolicy.now();
+                lastFullSync = highWaterMark;
+
+                List<Event> eventsFromRemoteSource = remoteEventSource.getAll();
+                merge(eventsFromRemoteSource, localEventSource.getAll());
+
+                version = previousVersion == null ? 1 : previousVersion + 1;
+            }
+
+            localEventSource.putSyncMetadata(new SyncMetadata(
+                    SyncMetadata.catalogue(),
+                    refreshPolicy.now(),
+                    SyncMetadata.Outcome.SUCCESS,
+                    null,
+                    version,
+                    highWaterMark,
+                    lastFullSync
+            ));
+            return Result.success(version);
+        } catch (Exception e) {
+            // Failures are not recorded: the previous catalogue, if any, stays in use
+            return Result.error(e, previousVersion);
+        }
+    }
+
+    /**
+     * Applies the changes of the catalogue since the last sync to the local source, in a single
+     * batch.
+     *
+     * @param modifiedEvents Events modified since the last sync
+     * @param remoteIds IDs of all the events of the remote source. Local events which are not
+     *                  there have been deleted; remote events which are neither in the local
+     *                  source nor in {@code modifiedEvents} (such as events whose date item has
+     *                  been edited, rather than the event itself) are fetched.
+     * @return {@code true} if the local source has changed
+     */
+    private boolean applyDelta(List<Event> modifiedEvents, Set<String> remoteIds)
+            throws Exception {
+        Map<String, Event> localEventsById = new HashMap<>();
+        for (Event event : localEventSource.getAll()) {
+            localEventsById.put(event.getId(), event);
+        }
+
+        List<Event> eventsToUpdate = new ArrayList<>();
+        Set<String> upToDateIds = new HashSet<>(localEventsById.keySet());
+        for (Event event : modifiedEvents) {
+            if (!remoteIds.contains(event.getId())) continue;  // Deleted meanwhile
+
+            upToDateIds.add(event.getId());
+            if (!event.equals(localEventsById.get(event.getId()))) eventsToUpdate.add(event);
+        }
+
+        List<String> missingIds = new ArrayList<>();
+        for (String id : remoteIds) {
+            if (!upToDateIds.contains(id)) missingIds.add(id);
+        }
+        if (!missingIds.isEmpty())
+            eventsToUpdate.addAll(remoteEventSource.getEvents(missingIds, false));
+
+        List<String> idsToDelete = new ArrayList<>();
+        for (String id : localEventsById.keySet()) {
+            if (!remoteIds.contains(id)) idsToDelete.add(id);
+        }
+
+        if (idsToDelete.isEmpty() && eventsToUpdate.isEmpty()) return false;
+
+        // Upserted: events are not always in localEventsById
+        localEventSource.applyChanges(idsToDelete, eventsToUpdate, Collections.emptyList());
+
+        cache.invalidateEvents(idsToDelete);
+        cache.invalidateUpdatedEvents(eventsToUpdate);
+        return true;
+    }
+
+    /**
+     * Returns {@code true} if the catalogue has been synced and has not expired: the local source
+     * then contains all the events.
+     */
+    private boolean isCatalogueFresh(Optional<SyncMetadata> catalogueSync) {
+        return catalogueSync.isPresent()
+                && catalogueSync.get().getOutcome() == SyncMetadata.Outcome.SUCCESS
+                && refreshPolicy.isFresh(catalogueSync.get());
+    }
+
+    /**
+     * Returns {@code true} once the catalogue has been synced, even if it has expired. Until then,
+     * the local source may have no event at all, and the bundled snapshot is used instead
+     * (see {@link com.axllblc.worlddays.data.source.SnapshotEventSource}).
+     */
+    private boolean isCatalogueSynced() {
+        // Failed syncs are not recorded
+        return localEventSource.getSyncMetadata(SyncMetadata.catalogue()).isPresent();
+    }
+
+    /**
+     * Returns {@code true} if the result of a list query must be fetched from the remote source.
+     * Never the case while the catalogue is fresh (see {@link #syncCatalogue(boolean)}).
+     *
+     * @param queryKey Key of the query, such as {@link SyncMetadata#month(int)}
+     * @param hasLocalData {@code true} if the local source has events for this query
+     */
+    private boolean shouldFetchList(String queryKey, boolean hasLocalData) {
+        if (isCatalogueFresh(localEventSource.getSyncMetadata(SyncMetadata.catalogue())))
+            return false;
+
+        return refreshPolicy.shouldFetch(localEventSource.getSyncMetadata(queryKey), hasLocalData);
+    }
+
+    /**
+     * Returns {@code true} if the event with given ID must be fetched from the remote source.
+     * Events are also stored by list queries: an event which has never been fetched on its own is
+     * only fetched if it is missing from the local source. An event which has been fetched on its
+     * own follows {@link RefreshPolicy#shouldFetch(Optional, boolean)}: while the fetch is fresh,
+     * an event missing from the local source (not found, or deleted since) is not fetched again.
+     */
+    private boolean shouldFetchEvent(String id, boolean withDetails, boolean hasLocalData) {
+        Optional<SyncMetadata> syncMetadata = localEventSource.getSyncMetadata(
+                SyncMetadata.event(id, withDetails)
+        );
+        return syncMetadata.isPresent()
+                ? refreshPolicy.shouldFetch(syncMetadata, hasLocalData)
+                : !hasLocalData;
+    }
+
+    /**
+     * Records the outcome of a fetch from the remote source, unless the fetch was cancelled
+     * (see {@link CancellationToken#current()}).
+     *
+     * @param queryKey Key of the query, such as {@link SyncMetadata#month(int)}
+     * @param success {@code true} if the fetch succeeded
+     */
+    private void recordFetch(String queryKey, boolean success) {
+        CancellationToken cancellationToken = CancellationToken.current();
+        if (cancellationToken != null && cancellationToken.isCancelled()) return;
+
+        try {
+            localEventSource.putSyncMetadata(new SyncMetadata(
+                    queryKey,
+                    refreshPolicy.now(),
+                    success ? SyncMetadata.Outcome.SUCCESS : SyncMetadata.Outcome.ERROR,
+                    null,
+                    null,
+                    null,
+                    null
+            ));
+        } catch (Exception ignored) {
+            // Without metadata, the query is fetched again next time
+        }
+    }
+
+    /**
+     * Fetches a fresh value in the background, using {@link AppExecutors#network()}, and passes
+     * it to {@code onRevalidated} if it has changed. Failures are ignored: the stale value stays.
+     * <p>
+     * The background task is cancelled with the task calling this method, if any
+     * (see {@link CancellationToken#current()}).
+     *
+     * @param fetch Fetches the fresh value
+     * @param hasChanged Returns {@code true} if the fresh value differs from the stale one
+     * @param onRevalidated Called with the fresh value, if it has changed
+     */
+    private <T> void revalidate(Supplier<Result<T>> fetch,
+                                Predicate<T> hasChanged,
+                                Consumer<T> onRevalidated) {
+        CancellationToken cancellationToken = CancellationToken.current();
+
+        Runnable task = () -> {
+            Result<T> result = fetch.get();
+            if (result.isSuccess() && hasChanged.test(result.get())) {
+                onRevalidated.accept(result.get());
+            }
+        };
+
+        executors.network().execute(() -> {
+            if (cancellationToken == null) {
+                task.run();
+            } else if (!cancellationToken.isCancelled()) {
+                cancellationToken.runWith(task);
+            }
+        });
+    }
+
     @Override
     public List<Event> getFavorites() {
-        return localEventSource.getFavorites();
+        List<Event> cachedFavorites = cache.getFavorites();
+        if (cachedFavorites != null) return cachedFavorites;
+
+        long generation = cache.getGeneration();
+        List<Event> favorites = localEventSource.getFavorites();
+        cache.putFavorites(favorites, generation);
+        return favorites;
     }
 
     @Override
     public boolean isFavorite(String eventId) {
+        Boolean cachedIsFavorite = cache.isFavorite(eventId);
+        if (cachedIsFavorite != null) return cachedIsFavorite;
+
         return localEventSource.isFavorite(eventId);
     }
 
     @Override
     public void star(String eventId) {
         localEventSource.star(eventId);
+        cache.invalidateFavorites();
     }
 
     @Override
     public void unstar(String eventId) {
         localEventSource.unstar(eventId);
+        cache.invalidateFavorites();
     }
 
     @Override
     public void unstarAll() {
         localEventSource.unstarAll();
+        cache.invalidateFavorites();
+    }
+
+    /**
+     * Returns the {@link EventCache} used by this repository.
+     */
+    public EventCache getCache() {
+        return cache;
     }
 
     private void merge(Event eventFromRemoteSource, Event eventFromLocalSource) {
         if (eventFromRemoteSource != null) {
             localEventSource.update(eventFromRemoteSource);
+            cache.invalidateUpdatedEvents(Collections.singleton(eventFromRemoteSource));
+        }
+    }
+
+    /**
+     * Upserts the events from the remote source which differ from the local ones. Unlike
+     * {@link #merge(List, List)}, local events which are not in {@code eventsFromRemoteSource}
+     * are kept.
+     *
+     * @param eventsFromRemoteSource Up-to-date events
+     * @param eventsFromLocalSource Events currently stored in the local source, for the same query
+     */
+    private void upsert(List<Event> eventsFromRemoteSource, List<Event> eventsFromLocalSource) {
+        Map<String, Event> localEventsById = new HashMap<>(eventsFromLocalSource.size() * 2);
+        for (Event event : eventsFromLocalSource) {
+            localEventsById.put(event.getId(), event);
+        }
+
+        List<Event> distinctEvents = new ArrayList<>(eventsFromRemoteSource.size());
+        Set<String> remoteIds = new HashSet<>(eventsFromRemoteSource.size() * 2);
+        for (Event event : eventsFromRemoteSource) {
+            if (remoteIds.add(event.getId())) distinctEvents.add(event);
+        }
+
+        mergePage(distinctEvents, localEventsById);
+    }
+
+    /**
+     * Updates the local source with a page of events from the remote source. Events which differ
+     * from {@code localEventsById} are upserted: events which are not in the result of the query
+     * on the local source may still be stored.
+     *
+     * @param page Up-to-date events, without duplicates
+     * @param localEventsById Events currently stored in the local source, for the same query
+     */
+    private void mergePage(List<Event> page, Map<String, Event> localEventsById) {
+        List<Event> eventsToUpdate = new ArrayList<>();
+        for (Event event : page) {
+            if (!event.equals(localEventsById.get(event.getId()))) eventsToUpdate.add(event);
+        }
+
+        if (!eventsToUpdate.isEmpty()) {
+            localEventSource.applyChanges(
+                    Collections.emptyList(), eventsToUpdate, Collections.emptyList()
+            );
+            cache.invalidateUpdatedEvents(eventsToUpdate);
         }
     }
 
+    /**
+     * Updates the local source with the events from the remote source.
+     * <p>
+     * Events are indexed by ID, so the difference between both lists is computed in linear time,
+     * then applied to the local source in a single batch.
+     *
+     * @param eventsFromRemoteSource Up-to-date events
+     * @param eventsFromLocalSource Events currently stored in the local source, for the same query
+     */
     private void merge(List<Event> eventsFromRemoteSource, List<Event> eventsFromLocalSource) {
+        Map<String, Event> localEventsById = new HashMap<>(eventsFromLocalSource.size() * 2);
+        for (Event event : eventsFromLocalSource) {
+            localEventsById.put(event.getId(), event);
+        }
+
+        // Events which are not in eventsFromLocalSource are upserted too: they may still be stored
+        // (for instance, an event whose date has changed is not in the list of its former month)
+        List<Event> eventsToUpdate = new ArrayList<>();
+        Set<String> remoteIds = new HashSet<>(eventsFromRemoteSource.size() * 2);
+
+        for (Event event : eventsFromRemoteSource) {
+            if (!remoteIds.add(event.getId())) continue;  // Duplicate
+
+            if (!event.equals(localEventsById.get(event.getId()))) eventsToUpdate.add(event);
+        }
+
         // Remove events which are not in eventsFromRemoteSource
-        eventsFromLocalSource.stream()
-                .filter(event -> eventsFromRemoteSource.stream().noneMatch(e -> e.hasSameId(event)))
-                .forEach(event -> localEventSource.delete(event));
-
-        // Update events
-        eventsFromRemoteSource.stream()
-                .filter(event -> eventsFromLocalSource.stream()
-                        .anyMatch(e -> e.hasSameId(event) && !e.equals(event))
-                )   /* ⇒ Events to update */
-                .forEach(event -> localEventSource.update(event));
-
-        // Insert events which are not in eventsFromLocalSource
-        eventsFromRemoteSource.stream()
-                .filter(event -> eventsFromLocalSource.stream().noneMatch(e -> e.hasSameId(event)))
-                .forEach(event -> localEventSource.insert(event));
+        List<String> idsToDelete = new ArrayList<>();
+        for (String id : localEventsById.keySet()) {
+            if (!remoteIds.contains(id)) idsToDelete.add(id);
+        }
+
+        if (!idsToDelete.isEmpty() || !eventsToUpdate.isEmpty()) {
+            localEventSource.applyChanges(idsToDelete, eventsToUpdate, Collections.emptyList());
+
+            cache.invalidateEvents(idsToDelete);
+            cache.invalidateUpdatedEvents(eventsToUpdate);
+        }
     }
 }
@@ -0,0 +1,91 @@
+package com.axllblc.worlddays.data.repository;
+
+import com.axllblc.worlddays.data.SyncMetadata;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Optional;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Decides whether the result of a query must be fetched from the remote source, based on its
+ * {@link SyncMetadata}.
+ * <p>
+ * A successful fetch is fresh for {@link #getSuccessTtl()}, even if its result is empty. After a
+ * failed fetch, the remote source is not queried again before {@link #getErrorTtl()}.
+ */
+@Singleton
+public class RefreshPolicy {
+    /**
+     * Default time during which a successful result is fresh. World days rarely change.
+     */
+    static final Duration DEFAULT_SUCCESS_TTL = Duration.ofDays(7);
+    /**
+     * Default time during which the remote source is not queried again after a failure.
+     */
+    static final Duration DEFAULT_ERROR_TTL = Duration.ofMinutes(5);
+
+    private final Duration successTtl;
+    private final Duration errorTtl;
+    private final Clock clock;
+
+    @Inject
+    public RefreshPolicy() {
+        this(DEFAULT_SUCCESS_TTL, DEFAULT_ERROR_TTL, Clock.systemUTC());
+    }
+
+    public RefreshPolicy(Duration successTtl, Duration errorTtl, Clock clock) {
+        this.successTtl = successTtl;
+        this.errorTtl = errorTtl;
+        this.clock = clock;
+    }
+
+    public Duration getSuccessTtl() {
+        return successTtl;
+    }
+
+    public Duration getErrorTtl() {
+        return errorTtl;
+    }
+
+    /**
+     * Returns the current time, in milliseconds since the epoch.
+     */
+    public long now() {
+        return clock.millis();
+    }
+
+    /**
+     * Returns {@code true} if the last fetch of a query is recent enough.
+     */
+    public boolean isFresh(SyncMetadata syncMetadata) {
+        Duration ttl = syncMetadata.getOutcome() == SyncMetadata.Outcome.SUCCESS
+                ? successTtl
+                : errorTtl;
+        return now() - syncMetadata.getLastFetched() < ttl.toMillis();
+    }
+
+    /**
+     * Returns {@code true} if the result of a query must be fetched from the remote source.
+     * <ul>
+     *     <li>A query which has never been fetched must be fetched.</li>
+     *     <li>After a successful fetch, the query must be fetched again once it is not fresh,
+     *     even if its result was empty.</li>
+     *     <li>After a failed fetch, the query is fetched again right away if there is no local
+     *     data to show, otherwise once the failure is not fresh.</li>
+     * </ul>
+     *
+     * @param syncMetadata Metadata of the query, if it has already been fetched
+     * @param hasLocalData {@code true} if the local source has data for this query
+     */
+    public boolean shouldFetch(Optional<SyncMetadata> syncMetadata, boolean hasLocalData) {
+        if (!syncMetadata.isPresent()) return true;
+
+        if (syncMetadata.get().getOutcome() == SyncMetadata.Outcome.ERROR && !hasLocalData)
+            return true;
+
+        return !isFresh(syncMetadata.get());
+    }
+}
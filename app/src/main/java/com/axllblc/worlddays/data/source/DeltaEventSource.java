@@ -0,0 +1,50 @@
+package com.axllblc.worlddays.data.source;
+
+import com.axllblc.worlddays.data.Event;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+/**
+ * Event source which can tell which events have changed since a given time, so that a copy of
+ * {@link ReadableEventSource#getAll()} can be updated without fetching all the events again.
+ */
+public interface DeltaEventSource {
+    /**
+     * Returns the events of {@link ReadableEventSource#getAll()} which have been modified after
+     * {@code since}.
+     *
+     * @param since Exclusive lower bound of the modification time
+     */
+    ModifiedEvents getEventsModifiedSince(Instant since) throws Exception;
+
+    /**
+     * Returns the IDs of all the events of {@link ReadableEventSource#getAll()}. Much cheaper
+     * than {@link ReadableEventSource#getAll()}: used to detect deleted events.
+     */
+    Set<String> getAllIds() throws Exception;
+
+    /**
+     * Result of {@link #getEventsModifiedSince(Instant)}.
+     */
+    @AllArgsConstructor
+    @Getter
+    @ToString
+    class ModifiedEvents {
+        /**
+         * Modified events, sorted by date, without duplicates.
+         */
+        private final @NonNull List<Event> events;
+        /**
+         * Latest modification time of {@link #events}, in milliseconds since the epoch, as
+         * reported by the source. {@code null} if there is no event.
+         */
+        private final Long latestModification;
+    }
+}
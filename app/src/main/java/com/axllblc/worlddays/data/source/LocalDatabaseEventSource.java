@@ -3,29 +3,164 @@ package com.axllblc.worlddays.data.source;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 
 import com.axllblc.worlddays.data.Event;
+import com.axllblc.worlddays.data.SyncMetadata;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
 import java.time.LocalDate;
 import java.time.MonthDay;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
+import javax.inject.Singleton;
 
 import dagger.hilt.android.qualifiers.ApplicationContext;
 
+/**
+ * Event source backed by a local SQLite database.
+ * <p>
+ * A single instance is shared by the whole application: the underlying connection is opened on
+ * first use and kept open for the lifetime of the process (Android does not notify applications
+ * before killing their process, and SQLite does not need the connection to be closed).
+ * Write-ahead logging is enabled, so reads are not blocked by concurrent writes.
+ */
+@Singleton
 public class LocalDatabaseEventSource extends SQLiteOpenHelper implements ReadWriteEventSource {
     private static final String DB_NAME = "world_days.db";
-    private static final int VERSION = 1;
+    static final int VERSION = 9;
+
+    /**
+     * Maximum number of arguments of a query (default limit of SQLite before version 3.32).
+     */
+    static final int MAX_QUERY_ARGS = 999;
+
+    /**
+     * Columns needed to build a basic (not detailed) {@link Event}. They are all part of the
+     * indexes on dates, so queries using this projection only need to read the index.
+     */
+    static final String[] BASIC_PROJECTION = {
+            DBContract.Events.ID.toString(),
+            DBContract.Events.TITLE.toString(),
+            DBContract.Events.MONTH.toString(),
+            DBContract.Events.DAY_OF_MONTH.toString(),
+    };
+
+    /**
+     * <i>Order by</i> clause, to sort events by date.
+     */
+    static final String ORDER_BY_DATE =
+            DBContract.Events.MONTH + ", " + DBContract.Events.DAY_OF_MONTH;
+
+    /**
+     * Selection of the events of a month. Argument: month [1-12].
+     */
+    static final String SELECTION_BY_MONTH = DBContract.Events.MONTH + " = ?";
+
+    /**
+     * Selection of favorite events. Must match the condition of the favorites index.
+     */
+    static final String SELECTION_FAVORITES = DBContract.Events.USER_FAVORITE + " = 1";
+
+    /**
+     * Selection of an event. Argument: event ID.
+     */
+    static final String SELECTION_BY_ID = DBContract.Events.ID + " = ?";
+
+    /**
+     * Alias of the {@code matchinfo} column in full-text queries.
+     */
+    private static final String MATCH_INFO = "MATCH_INFO";
+
+    /**
+     * Statement used to insert an event. See {@link #bindEvent(SQLiteStatement, Event)}.
+     */
+    private static final String INSERT_STATEMENT = "INSERT INTO " + DBContract.Events.TABLE_NAME
+            + " (" + DBContract.Events.ID
+            + ", " + DBContract.Events.TITLE
+            + ", " + DBContract.Events.MONTH
+            + ", " + DBContract.Events.DAY_OF_MONTH
+            + ", " + DBContract.Events.DETAILS_FETCHED
+            + ", " + DBContract.Events.WIKIPEDIA_URL
+            + ", " + DBContract.Events.WIKIPEDIA_INTRO
+            + ", " + DBContract.Events.INCEPTION
+            + ", " + DBContract.Events.FOUNDER
+            + ", " + DBContract.Events.CONTENT_HASH
+            + ", " + DBContract.Events.DETAILS_HASH
+            + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * Statement used to delete an event. Parameter: ID.
+     */
+    private static final String DELETE_STATEMENT = "DELETE FROM " + DBContract.Events.TABLE_NAME
+            + " WHERE " + DBContract.Events.ID + " = ?";
+
+    /**
+     * Statement used to insert an event if it does not exist yet, with its basic information only.
+     * Parameters: ID, TITLE, MONTH, DAY_OF_MONTH, CONTENT_HASH.
+     *
+     * @see #upsertAll(SQLiteDatabase, List)
+     */
+    private static final String UPSERT_INSERT_STATEMENT = "INSERT OR IGNORE INTO "
+            + DBContract.Events.TABLE_NAME
+            + " (" + DBContract.Events.ID
+            + ", " + DBContract.Events.TITLE
+            + ", " + DBContract.Events.MONTH
+            + ", " + DBContract.Events.DAY_OF_MONTH
+            + ", " + DBContract.Events.CONTENT_HASH
+            + ") VALUES (?, ?, ?, ?, ?)";
+
+    /**
+     * Statement used to update the basic information of an event, if it has changed.
+     * Parameters: TITLE, MONTH, DAY_OF_MONTH, CONTENT_HASH, ID, CONTENT_HASH.
+     *
+     * @see #upsertAll(SQLiteDatabase, List)
+     */
+    private static final String UPSERT_UPDATE_STATEMENT = "UPDATE " + DBContract.Events.TABLE_NAME
+            + " SET " + DBContract.Events.TITLE + " = ?"
+            + ", " + DBContract.Events.MONTH + " = ?"
+            + ", " + DBContract.Events.DAY_OF_MONTH + " = ?"
+            + ", " + DBContract.Events.CONTENT_HASH + " = ?"
+            + " WHERE " + DBContract.Events.ID + " = ?"
+            + " AND " + DBContract.Events.CONTENT_HASH + " IS NOT ?";
+
+    /**
+     * Statement used to update the details of an event, if they have changed.
+     * Parameters: WIKIPEDIA_URL, WIKIPEDIA_INTRO, INCEPTION, FOUNDER, DETAILS_HASH, ID, DETAILS_HASH.
+     *
+     * @see #upsertAll(SQLiteDatabase, List)
+     */
+    private static final String UPSERT_UPDATE_DETAILS_STATEMENT = "UPDATE "
+            + DBContract.Events.TABLE_NAME
+            + " SET " + DBContract.Events.WIKIPEDIA_URL + " = ?"
+            + ", " + DBContract.Events.WIKIPEDIA_INTRO + " = ?"
+            + ", " + DBContract.Events.INCEPTION + " = ?"
+            + ", " + DBContract.Events.FOUNDER + " = ?"
+            + ", " + DBContract.Events.DETAILS_FETCHED + " = 1"
+            + ", " + DBContract.Events.DETAILS_HASH + " = ?"
+            + " WHERE " + DBContract.Events.ID + " = ?"
+            + " AND " + DBContract.Events.DETAILS_HASH + " IS NOT ?";
 
     public @Inject LocalDatabaseEventSource(@ApplicationContext Context context) {
         super(context, DB_NAME, null, VERSION);
+        setWriteAheadLoggingEnabled(true);
     }
 
 
@@ -41,117 +176,278 @@ public class LocalDatabaseEventSource extends SQLiteOpenHelper implements ReadWr
                 ");";
 
         db.execSQL(query);
+
+        createFullTextIndex(db);
+        createIndexes(db);
+        createSyncMetadataTable(db);
     }
 
+    /**
+     * Upgrades the schema in place, keeping existing events and favorites.
+     *
+     * @see LocalDatabaseMigrations
+     */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        String query = "DROP TABLE IF EXISTS " + DBContract.Events.TABLE_NAME;
-        db.execSQL(query);
-        onCreate(db);
+        LocalDatabaseMigrations.migrate(db, oldVersion, newVersion);
+    }
+
+    /**
+     * Creates the full-text index on event titles ({@link DBContract.EventsFts}), and the
+     * triggers that keep it in sync with {@link DBContract.Events}.
+     */
+    private static void createFullTextIndex(SQLiteDatabase db) {
+        String fts = DBContract.EventsFts.TABLE_NAME;
+        String events = DBContract.Events.TABLE_NAME;
+        String title = DBContract.Events.TITLE.toString();
+        String docId = DBContract.Events.DOC_ID.toString();
+
+        // External content table: titles are not duplicated, only indexed
+        db.execSQL("CREATE VIRTUAL TABLE " + fts + " USING fts4("
+                + "content=\"" + events + "\", "
+                + title + ", "
+                + "tokenize=unicode61 \"remove_diacritics=1\")");
+
+        db.execSQL("CREATE TRIGGER " + fts + "_before_update BEFORE UPDATE OF " + title
+                + " ON " + events + " BEGIN "
+                + "DELETE FROM " + fts + " WHERE docid = old." + docId + "; "
+                + "END");
+        db.execSQL("CREATE TRIGGER " + fts + "_before_delete BEFORE DELETE ON " + events + " BEGIN "
+                + "DELETE FROM " + fts + " WHERE docid = old." + docId + "; "
+                + "END");
+        db.execSQL("CREATE TRIGGER " + fts + "_after_update AFTER UPDATE OF " + title
+                + " ON " + events + " BEGIN "
+                + "INSERT INTO " + fts + " (docid, " + title + ") VALUES (new." + docId + ", new." + title + "); "
+                + "END");
+        db.execSQL("CREATE TRIGGER " + fts + "_after_insert AFTER INSERT ON " + events + " BEGIN "
+                + "INSERT INTO " + fts + " (docid, " + title + ") VALUES (new." + docId + ", new." + title + "); "
+                + "END");
+
+        // Index existing rows
+        db.execSQL("INSERT INTO " + fts + " (" + fts + ") VALUES ('rebuild')");
+    }
+
+    /**
+     * Creates the indexes used to list events by date: one on all events, and a partial one on
+     * favorite events. Both contain all the columns of {@link #BASIC_PROJECTION}, so event lists
+     * are read from the indexes only, already sorted by date.
+     */
+    private static void createIndexes(SQLiteDatabase db) {
+        // Date first, to search and sort by date
+        String indexColumns = ORDER_BY_DATE
+                + ", " + DBContract.Events.ID
+                + ", " + DBContract.Events.TITLE;
+
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + DBContract.Indexes.EVENTS_BY_DATE
+                + " ON " + DBContract.Events.TABLE_NAME + " (" + indexColumns + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + DBContract.Indexes.FAVORITES_BY_DATE
+                + " ON " + DBContract.Events.TABLE_NAME + " (" + indexColumns + ")"
+                + " WHERE " + SELECTION_FAVORITES);
+    }
+
+    /**
+     * Creates the table of {@link SyncMetadata} ({@link DBContract.SyncMetadata}).
+     */
+    private static void createSyncMetadataTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + DBContract.SyncMetadata.TABLE_NAME + " (" +
+                Arrays.stream(DBContract.SyncMetadata.values())
+                        .map(attribute -> attribute + " " + attribute.sqlType)
+                        .collect(Collectors.joining(", ")) +
+                ");");
     }
 
     @Override
     public Optional<Event> getEvent(String id, boolean withDetails) {
-        try (SQLiteDatabase db = getReadableDatabase()) {
-            String[] projection = {"*"};
-            String selection = DBContract.Events.ID + " = ?";
-            String[] selectionArgs = {id};
+        SQLiteDatabase db = getReadableDatabase();
+        String[] projection = {"*"};
+        String selection = SELECTION_BY_ID;
+        String[] selectionArgs = {id};
+
+        try (Cursor cursor = db.query(
+                DBContract.Events.TABLE_NAME,
+                projection,
+                selection,
+                selectionArgs,
+                null,
+                null,
+                null)
+        ) {
+            if (cursor.moveToNext()) {
+                Event event = cursorToEvent(cursor, withDetails);
+                if (withDetails && !event.isDetailed()) return Optional.empty();
+                return Optional.of(event);
+            } else {
+                return Optional.empty();
+            }
+        }
+    }
+
+    /**
+     * Returns the events with given IDs, using one {@code IN (...)} query for each chunk of
+     * {@link #MAX_QUERY_ARGS} IDs.
+     */
+    @Override
+    public List<Event> getEvents(Collection<String> ids, boolean withDetails) {
+        SQLiteDatabase db = getReadableDatabase();
+        String[] projection = withDetails ? new String[]{"*"} : BASIC_PROJECTION;
+        List<String> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        List<Event> events = new ArrayList<>(distinctIds.size());
+
+        for (int from = 0; from < distinctIds.size(); from += MAX_QUERY_ARGS) {
+            List<String> chunk = distinctIds.subList(
+                    from, Math.min(from + MAX_QUERY_ARGS, distinctIds.size())
+            );
+            String selection = DBContract.Events.ID + " IN ("
+                    + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
 
             try (Cursor cursor = db.query(
                     DBContract.Events.TABLE_NAME,
                     projection,
                     selection,
-                    selectionArgs,
+                    chunk.toArray(new String[0]),
                     null,
                     null,
                     null)
             ) {
-                if (cursor.moveToNext()) {
+                while (cursor.moveToNext()) {
                     Event event = cursorToEvent(cursor, withDetails);
-                    if (withDetails && !event.isDetailed()) return Optional.empty();
-                    return Optional.of(event);
-                } else {
-                    return Optional.empty();
+                    if (!withDetails || event.isDetailed()) events.add(event);
                 }
             }
         }
+
+        return events;
     }
 
     @Override
     public List<Event> getAll() {
-        try (SQLiteDatabase db = getReadableDatabase()) {
-            String[] projection = {"*"};
-
-            try (Cursor cursor = db.query(
-                    DBContract.Events.TABLE_NAME,
-                    projection,
-                    null,
-                    null,
-                    null,
-                    null,
-                    null)
-            ) {
-                List<Event> events = new ArrayList<>();
-
-                while (cursor.moveToNext()) {
-                    events.add(cursorToEvent(cursor, false));
-                }
-
-                return events;
+        SQLiteDatabase db = getReadableDatabase();
+
+        try (Cursor cursor = db.query(
+                DBContract.Events.TABLE_NAME,
+                BASIC_PROJECTION,
+                null,
+                null,
+                null,
+                null,
+                ORDER_BY_DATE)
+        ) {
+            List<Event> events = new ArrayList<>();
+
+            while (cursor.moveToNext()) {
+                events.add(cursorToEvent(cursor, false));
             }
+
+            return events;
         }
     }
 
+    /**
+     * Returns the events whose title contains words starting with each word of {@code str}
+     * (case and diacritics are ignored), using the full-text index. Results are sorted by
+     * relevance.
+     *
+     * @param str Words to search
+     * @return Matching events, most relevant first
+     */
     @Override
     public List<Event> getEventsByName(String str) {
-        try (SQLiteDatabase db = getReadableDatabase()) {
-            String[] projection = {"*"};
-            String selection = DBContract.Events.TITLE + " LIKE '%' || ? || '%'";
-            String[] selectionArgs = {str};
+        String matchQuery = toMatchQuery(str);
+        if (matchQuery.isEmpty()) return getAll();
+
+        SQLiteDatabase db = getReadableDatabase();
+        String query = "SELECT "
+                + Arrays.stream(BASIC_PROJECTION)
+                        .map(column -> DBContract.Events.TABLE_NAME + "." + column + ", ")
+                        .collect(Collectors.joining())
+                + "matchinfo(" + DBContract.EventsFts.TABLE_NAME + ", 'pcx') AS " + MATCH_INFO
+                + " FROM " + DBContract.EventsFts.TABLE_NAME
+                + " JOIN " + DBContract.Events.TABLE_NAME
+                + " ON " + DBContract.Events.TABLE_NAME + "." + DBContract.Events.DOC_ID + " = "
+                + DBContract.EventsFts.TABLE_NAME + ".docid"
+                + " WHERE " + DBContract.EventsFts.TABLE_NAME + " MATCH ?";
+        String[] selectionArgs = {matchQuery};
+
+        try (Cursor cursor = db.rawQuery(query, selectionArgs)) {
+            List<Event> events = new ArrayList<>();
+            Map<Event, Double> scores = new HashMap<>();
+            int matchInfoIndex = cursor.getColumnIndexOrThrow(MATCH_INFO);
+
+            while (cursor.moveToNext()) {
+                Event event = cursorToEvent(cursor, false);
+                events.add(event);
+                scores.put(event, relevance(cursor.getBlob(matchInfoIndex)));
+            }
 
-            try (Cursor cursor = db.query(
-                    DBContract.Events.TABLE_NAME,
-                    projection,
-                    selection,
-                    selectionArgs,
-                    null,
-                    null,
-                    null)
-            ) {
-                List<Event> events = new ArrayList<>();
+            events.sort(Comparator.<Event>comparingDouble(scores::get).reversed()
+                    .thenComparing(event -> event.getTitle().length())
+                    .thenComparing(Event::getMonthDay));
+            return events;
+        }
+    }
 
-                while (cursor.moveToNext()) {
-                    events.add(cursorToEvent(cursor, false));
-                }
+    /**
+     * Builds a full-text query from a user input: each word becomes a prefix query, and all
+     * words must match.
+     *
+     * @param str User input, such as {@code "world happ"}
+     * @return Full-text query, such as {@code "world* happ*"}, or an empty string if {@code str}
+     *         does not contain any word
+     */
+    static String toMatchQuery(String str) {
+        return Arrays.stream(str.split("[^\\p{L}\\p{N}]+"))
+                .filter(word -> !word.isEmpty())
+                // Lower case, so words are never interpreted as operators (AND, OR, NOT…)
+                .map(word -> word.toLowerCase(Locale.ROOT) + "*")
+                .collect(Collectors.joining(" "));
+    }
 
-                return events;
+    /**
+     * Computes a relevance score from the result of the {@code matchinfo} function, called with
+     * the {@code 'pcx'} format: for each phrase of the query, the number of occurrences in the row
+     * is divided by the number of occurrences in all rows, so rare words weigh more.
+     *
+     * @param matchInfo Result of {@code matchinfo(..., 'pcx')}
+     * @return Relevance score (greater is more relevant)
+     */
+    private static double relevance(byte[] matchInfo) {
+        IntBuffer info = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+        int phraseCount = info.get(0);
+        int columnCount = info.get(1);
+
+        double score = 0;
+        for (int phrase = 0; phrase < phraseCount; phrase++) {
+            for (int column = 0; column < columnCount; column++) {
+                int offset = 2 + 3 * (phrase * columnCount + column);
+                int hitsInRow = info.get(offset);
+                int hitsInAllRows = info.get(offset + 1);
+                if (hitsInAllRows > 0) score += (double) hitsInRow / hitsInAllRows;
             }
         }
+        return score;
     }
 
     @Override
     public List<Event> getEventsByMonth(int month) {
-        try (SQLiteDatabase db = getReadableDatabase()) {
-            String[] projection = {"*"};
-            String selection = DBContract.Events.MONTH + " = " + month;
-
-            try (Cursor cursor = db.query(
-                    DBContract.Events.TABLE_NAME,
-                    projection,
-                    selection,
-                    null,
-                    null,
-                    null,
-                    null)
-            ) {
-                List<Event> events = new ArrayList<>();
-
-                while (cursor.moveToNext()) {
-                    events.add(cursorToEvent(cursor, false));
-                }
-
-                return events;
+        SQLiteDatabase db = getReadableDatabase();
+        String[] selectionArgs = {String.valueOf(month)};
+
+        try (Cursor cursor = db.query(
+                DBContract.Events.TABLE_NAME,
+                BASIC_PROJECTION,
+                SELECTION_BY_MONTH,
+                selectionArgs,
+                null,
+                null,
+                ORDER_BY_DATE)
+        ) {
+            List<Event> events = new ArrayList<>();
+
+            while (cursor.moveToNext()) {
+                events.add(cursorToEvent(cursor, false));
             }
+
+            return events;
         }
     }
 
@@ -165,10 +461,11 @@ public class LocalDatabaseEventSource extends SQLiteOpenHelper implements ReadWr
         int dayOfMonth = cursor
                 .getInt(cursor.getColumnIndexOrThrow(DBContract.Events.DAY_OF_MONTH.toString()));
         MonthDay monthDay = MonthDay.of(month, dayOfMonth);
-        boolean detailsFetched = 1 == cursor
+        // Details are only read if requested (they are not part of BASIC_PROJECTION)
+        boolean detailsFetched = withDetails && 1 == cursor
                 .getInt(cursor.getColumnIndexOrThrow(DBContract.Events.DETAILS_FETCHED.toString()));
 
-        if (withDetails && detailsFetched) {
+        if (detailsFetched) {
             String wikipediaUrl = cursor
                     .getString(cursor.getColumnIndexOrThrow(DBContract.Events.WIKIPEDIA_URL.toString()));
             String wikipediaIntro = cursor
@@ -195,36 +492,195 @@ public class LocalDatabaseEventSource extends SQLiteOpenHelper implements ReadWr
         insertAll(list);
     }
 
+    /**
+     * Inserts all the given events, in a single transaction.
+     * <p>
+     * If an insertion fails, the transaction is rolled back: no event is inserted.
+     *
+     * @param events Events to insert
+     * @throws SQLException If an insertion failed (for example, if an event already exists)
+     */
     @Override
     public void insertAll(List<Event> events) {
-        try (SQLiteDatabase db = getWritableDatabase()) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            insertAll(db, events);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Inserts all the given events. Must be called inside a transaction.
+     *
+     * @throws SQLException If an insertion failed
+     * @see #insertAll(List)
+     */
+    private static void insertAll(SQLiteDatabase db, List<Event> events) {
+        try (SQLiteStatement statement = db.compileStatement(INSERT_STATEMENT)) {
+            for (Event event: events) {
+                statement.clearBindings();
+                bindEvent(statement, event);
+
+                long result = statement.executeInsert();
+                if (result == -1) throw new SQLException("Failed to insert " + event.getId());
+            }
+        }
+    }
+
+    /**
+     * Binds the attributes of {@code event} to the parameters of {@link #INSERT_STATEMENT}.
+     */
+    private static void bindEvent(SQLiteStatement statement, Event event) {
+        statement.bindString(1, event.getId());
+        statement.bindString(2, event.getTitle());
+        statement.bindLong(3, event.getMonthDay().getMonthValue());
+        statement.bindLong(4, event.getMonthDay().getDayOfMonth());
+
+        statement.bindLong(5, event.isDetailed() ? 1 : 0);
+        if (event.isDetailed()) {
+            bindNullableString(statement, 6, event.getWikipediaURL());
+            bindNullableString(statement, 7, event.getWikipediaIntro());
+            bindNullableString(statement, 8,
+                    event.getInception() != null ? event.getInception().toString() : null
+            );
+            bindNullableString(statement, 9, event.getFounder());
+        }
+
+        statement.bindLong(10, contentHash(event));
+        if (event.isDetailed()) {
+            statement.bindLong(11, detailsHash(event));
+        } else {
+            statement.bindNull(11);
+        }
+    }
+
+    private static void bindNullableString(SQLiteStatement statement, int index, String value) {
+        if (value != null) {
+            statement.bindString(index, value);
+        } else {
+            statement.bindNull(index);
+        }
+    }
+
+    /**
+     * Inserts {@code event}, or updates it if it already exists.
+     * <p>
+     * Only the attributes carried by {@code event} are written: the details of an existing event
+     * are kept if {@code event} is not detailed, and its favorite status is always kept.
+     * Attributes which have not changed (according to their hash) are not written.
+     *
+     * @param event Event to insert or update
+     */
+    @Override
+    public void update(Event event) {
+        List<Event> list = new ArrayList<>(1);
+        list.add(event);
+
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            upsertAll(db, list);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Inserts or updates the given events. Must be called inside a transaction.
+     * <p>
+     * SQLite supports {@code INSERT ... ON CONFLICT DO UPDATE} from version 3.24 only, which is
+     * not available on all supported Android versions: an {@code INSERT OR IGNORE} followed by
+     * conditional {@code UPDATE}s is used instead.
+     *
+     * @see #update(Event)
+     */
+    private static void upsertAll(SQLiteDatabase db, List<Event> events) {
+        try (SQLiteStatement insert = db.compileStatement(UPSERT_INSERT_STATEMENT);
+             SQLiteStatement update = db.compileStatement(UPSERT_UPDATE_STATEMENT);
+             SQLiteStatement updateDetails = db.compileStatement(UPSERT_UPDATE_DETAILS_STATEMENT)
+        ) {
             for (Event event: events) {
-                ContentValues row = new ContentValues();
-                row.put(DBContract.Events.ID.toString(), event.getId());
-                row.put(DBContract.Events.TITLE.toString(), event.getTitle());
-                row.put(DBContract.Events.MONTH.toString(), event.getMonthDay().getMonthValue());
-                row.put(DBContract.Events.DAY_OF_MONTH.toString(), event.getMonthDay().getDayOfMonth());
+                long contentHash = contentHash(event);
+
+                // Insert the event if it does not exist…
+                insert.bindString(1, event.getId());
+                insert.bindString(2, event.getTitle());
+                insert.bindLong(3, event.getMonthDay().getMonthValue());
+                insert.bindLong(4, event.getMonthDay().getDayOfMonth());
+                insert.bindLong(5, contentHash);
+                insert.executeInsert();
+
+                // …otherwise, update it if it has changed
+                update.bindString(1, event.getTitle());
+                update.bindLong(2, event.getMonthDay().getMonthValue());
+                update.bindLong(3, event.getMonthDay().getDayOfMonth());
+                update.bindLong(4, contentHash);
+                update.bindString(5, event.getId());
+                update.bindLong(6, contentHash);
+                update.executeUpdateDelete();
 
-                row.put(DBContract.Events.DETAILS_FETCHED.toString(), event.isDetailed());
                 if (event.isDetailed()) {
-                    row.put(DBContract.Events.WIKIPEDIA_URL.toString(), event.getWikipediaURL());
-                    row.put(DBContract.Events.WIKIPEDIA_INTRO.toString(), event.getWikipediaIntro());
-                    row.put(DBContract.Events.INCEPTION.toString(),
+                    long detailsHash = detailsHash(event);
+
+                    bindNullableString(updateDetails, 1, event.getWikipediaURL());
+                    bindNullableString(updateDetails, 2, event.getWikipediaIntro());
+                    bindNullableString(updateDetails, 3,
                             event.getInception() != null ? event.getInception().toString() : null
                     );
-                    row.put(DBContract.Events.FOUNDER.toString(), event.getFounder());
+                    bindNullableString(updateDetails, 4, event.getFounder());
+                    updateDetails.bindLong(5, detailsHash);
+                    updateDetails.bindString(6, event.getId());
+                    updateDetails.bindLong(7, detailsHash);
+                    updateDetails.executeUpdateDelete();
                 }
-
-                long result = db.insert(DBContract.Events.TABLE_NAME, null, row);
-                if (result == -1) throw new RuntimeException();
             }
         }
     }
 
-    @Override
-    public void update(Event event) {
-        delete(event.getId());
-        insert(event);
+    /**
+     * Returns a hash of the basic information of {@code event} (title and date).
+     */
+    private static long contentHash(Event event) {
+        return hash(
+                event.getTitle(),
+                String.valueOf(event.getMonthDay().getMonthValue()),
+                String.valueOf(event.getMonthDay().getDayOfMonth())
+        );
+    }
+
+    /**
+     * Returns a hash of the details of {@code event}.
+     */
+    private static long detailsHash(Event event) {
+        return hash(
+                event.getWikipediaURL(),
+                event.getWikipediaIntro(),
+                event.getInception() != null ? event.getInception().toString() : null,
+                event.getFounder()
+        );
+    }
+
+    /**
+     * Returns a 64-bit FNV-1a hash of the given values ({@code null} values are allowed).
+     */
+    private static long hash(String... values) {
+        long hash = 0xcbf29ce484222325L;
+        for (String value : values) {
+            if (value != null) {
+                for (int i = 0; i < value.length(); i++) {
+                    hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+                }
+            } else {
+                hash = (hash ^ 0xFFFF) * 0x100000001b3L;
+            }
+            // Separator
+            hash = (hash ^ 0xFFFE) * 0x100000001b3L;
+        }
+        return hash;
     }
 
     @Override
@@ -234,15 +690,52 @@ public class LocalDatabaseEventSource extends SQLiteOpenHelper implements ReadWr
 
     @Override
     public void delete(String eventId) {
-        try (SQLiteDatabase db = getWritableDatabase()) {
-            db.delete(DBContract.Events.TABLE_NAME, "ID = ?", new String[]{eventId});
-        }
+        SQLiteDatabase db = getWritableDatabase();
+        db.delete(DBContract.Events.TABLE_NAME, "ID = ?", new String[]{eventId});
     }
 
+    /**
+     * Deletes all events, and all the {@link SyncMetadata}: queries must be fetched again.
+     */
     @Override
     public void deleteAll() {
-        try (SQLiteDatabase db = getWritableDatabase()) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
             db.delete(DBContract.Events.TABLE_NAME, null, null);
+            db.delete(DBContract.SyncMetadata.TABLE_NAME, null, null);
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Applies a set of changes in a single transaction. If a change fails, the transaction is
+     * rolled back: no change is applied.
+     *
+     * @throws SQLException If a change failed
+     */
+    @Override
+    public void applyChanges(Collection<String> idsToDelete,
+                             List<Event> eventsToUpdate,
+                             List<Event> eventsToInsert) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            try (SQLiteStatement delete = db.compileStatement(DELETE_STATEMENT)) {
+                for (String id : idsToDelete) {
+                    delete.bindString(1, id);
+                    delete.executeUpdateDelete();
+                }
+            }
+            upsertAll(db, eventsToUpdate);
+            insertAll(db, eventsToInsert);
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
         }
     }
 
@@ -251,50 +744,45 @@ public class LocalDatabaseEventSource extends SQLiteOpenHelper implements ReadWr
 
     @Override
     public List<Event> getFavorites() {
-        try (SQLiteDatabase db = getReadableDatabase()) {
-            String[] projection = {"*"};
-
-            try (Cursor cursor = db.query(
-                    DBContract.Events.TABLE_NAME,
-                    projection,
-                    DBContract.Events.USER_FAVORITE + " = 1",
-                    null,
-                    null,
-                    null,
-                    null)
-            ) {
-                List<Event> events = new ArrayList<>();
-
-                while (cursor.moveToNext()) {
-                    events.add(cursorToEvent(cursor, false));
-                }
-
-                return events;
+        SQLiteDatabase db = getReadableDatabase();
+        try (Cursor cursor = db.query(
+                DBContract.Events.TABLE_NAME,
+                BASIC_PROJECTION,
+                SELECTION_FAVORITES,
+                null,
+                null,
+                null,
+                ORDER_BY_DATE)
+        ) {
+            List<Event> events = new ArrayList<>();
+
+            while (cursor.moveToNext()) {
+                events.add(cursorToEvent(cursor, false));
             }
+
+            return events;
         }
     }
 
     @Override
     public boolean isFavorite(String eventId) {
-        try (SQLiteDatabase db = getReadableDatabase()) {
-            String[] projection = {"*"};
-
-            String selection = DBContract.Events.ID + " = ? AND "
-                    + DBContract.Events.USER_FAVORITE + " = 1";
-            String[] selectionArgs = {eventId};
-
-            try (Cursor cursor = db.query(
-                    DBContract.Events.TABLE_NAME,
-                    projection,
-                    selection,
-                    selectionArgs,
-                    null,
-                    null,
-                    null)
-            ) {
-                return cursor.moveToNext();
-                // Returns true if there is an event
-            }
+        SQLiteDatabase db = getReadableDatabase();
+        String[] projection = {DBContract.Events.ID.toString()};
+
+        String selection = SELECTION_BY_ID + " AND " + SELECTION_FAVORITES;
+        String[] selectionArgs = {eventId};
+
+        try (Cursor cursor = db.query(
+                DBContract.Events.TABLE_NAME,
+                projection,
+                selection,
+                selectionArgs,
+                null,
+                null,
+                null)
+        ) {
+            return cursor.moveToNext();
+            // Returns true if there is an event
         }
     }
 
@@ -310,32 +798,101 @@ public class LocalDatabaseEventSource extends SQLiteOpenHelper implements ReadWr
 
     @Override
     public void unstarAll() {
-        try (SQLiteDatabase db = getWritableDatabase()) {
-            ContentValues contentValues = new ContentValues();
-            contentValues.put(DBContract.Events.USER_FAVORITE.toString(), false);
+        SQLiteDatabase db = getWritableDatabase();
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(DBContract.Events.USER_FAVORITE.toString(), false);
 
-            db.update(DBContract.Events.TABLE_NAME, contentValues, null, null);
-        }
+        db.update(DBContract.Events.TABLE_NAME, contentValues, null, null);
     }
 
     private void setFavorite(String eventId, boolean star) {
-        try (SQLiteDatabase db = getWritableDatabase()) {
-            ContentValues contentValues = new ContentValues();
-            contentValues.put(DBContract.Events.USER_FAVORITE.toString(), star);
+        SQLiteDatabase db = getWritableDatabase();
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(DBContract.Events.USER_FAVORITE.toString(), star);
+
+        String whereClause = DBContract.Events.ID + " = ?";
+        String[] whereArgs = {eventId};
+
+        db.update(DBContract.Events.TABLE_NAME, contentValues, whereClause, whereArgs);
+    }
 
-            String whereClause = DBContract.Events.ID + " = ?";
-            String[] whereArgs = {eventId};
 
-            db.update(DBContract.Events.TABLE_NAME, contentValues, whereClause, whereArgs);
+
+    // SyncMetadataSource implementation
+
+    @Override
+    public Optional<SyncMetadata> getSyncMetadata(String queryKey) {
+        SQLiteDatabase db = getReadableDatabase();
+        String selection = DBContract.SyncMetadata.QUERY_KEY + " = ?";
+        String[] selectionArgs = {queryKey};
+
+        try (Cursor cursor = db.query(
+                DBContract.SyncMetadata.TABLE_NAME,
+                null,
+                selection,
+                selectionArgs,
+                null,
+                null,
+                null)
+        ) {
+            if (!cursor.moveToNext()) return Optional.empty();
+
+            int etagIndex = cursor.getColumnIndexOrThrow(DBContract.SyncMetadata.ETAG.toString());
+            int versionIndex = cursor.getColumnIndexOrThrow(
+                    DBContract.SyncMetadata.VERSION.toString());
+            int highWaterMarkIndex = cursor.getColumnIndexOrThrow(
+                    DBContract.SyncMetadata.HIGH_WATER_MARK.toString());
+            int lastFullSyncIndex = cursor.getColumnIndexOrThrow(
+                    DBContract.SyncMetadata.LAST_FULL_SYNC.toString());
+            return Optional.of(new SyncMetadata(
+                    queryKey,
+                    cursor.getLong(cursor.getColumnIndexOrThrow(
+                            DBContract.SyncMetadata.LAST_FETCHED.toString())),
+                    SyncMetadata.Outcome.valueOf(cursor.getString(cursor.getColumnIndexOrThrow(
+                            DBContract.SyncMetadata.OUTCOME.toString()))),
+                    cursor.isNull(etagIndex) ? null : cursor.getString(etagIndex),
+                    cursor.isNull(versionIndex) ? null : cursor.getLong(versionIndex),
+                    cursor.isNull(highWaterMarkIndex) ? null : cursor.getLong(highWaterMarkIndex),
+                    cursor.isNull(lastFullSyncIndex) ? null : cursor.getLong(lastFullSyncIndex)
+            ));
         }
     }
 
+    @Override
+    public void putSyncMetadata(SyncMetadata syncMetadata) {
+        SQLiteDatabase db = getWritableDatabase();
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(DBContract.SyncMetadata.QUERY_KEY.toString(), syncMetadata.getQueryKey());
+        contentValues.put(DBContract.SyncMetadata.LAST_FETCHED.toString(), syncMetadata.getLastFetched());
+        contentValues.put(DBContract.SyncMetadata.OUTCOME.toString(), syncMetadata.getOutcome().name());
+        contentValues.put(DBContract.SyncMetadata.ETAG.toString(), syncMetadata.getEtag());
+        contentValues.put(DBContract.SyncMetadata.VERSION.toString(), syncMetadata.getVersion());
+        contentValues.put(DBContract.SyncMetadata.HIGH_WATER_MARK.toString(),
+                syncMetadata.getHighWaterMark());
+        contentValues.put(DBContract.SyncMetadata.LAST_FULL_SYNC.toString(),
+                syncMetadata.getLastFullSync());
+
+        db.insertWithOnConflict(DBContract.SyncMetadata.TABLE_NAME, null, contentValues,
+                SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    @Override
+    public void deleteAllSyncMetadata() {
+        SQLiteDatabase db = getWritableDatabase();
+        db.delete(DBContract.SyncMetadata.TABLE_NAME, null, null);
+    }
+
     /**
      * Defines the tables of the database.
      */
     static class DBContract {
         enum Events {
-            ID("TEXT PRIMARY KEY"),
+            /**
+             * Alias of {@code rowid}, used as {@code docid} in {@link EventsFts}. Unlike the
+             * implicit {@code rowid}, it is never renumbered by {@code VACUUM}.
+             */
+            DOC_ID("INTEGER PRIMARY KEY"),
+            ID("TEXT NOT NULL UNIQUE"),
             TITLE("TEXT"),
             MONTH("INTEGER"),
             DAY_OF_MONTH("INTEGER"),
@@ -345,6 +902,14 @@ public class LocalDatabaseEventSource extends SQLiteOpenHelper implements ReadWr
             FOUNDER("TEXT DEFAULT NULL"),
             DETAILS_FETCHED("BOOLEAN DEFAULT FALSE"),
             USER_FAVORITE("BOOLEAN DEFAULT FALSE"),
+            /**
+             * Hash of the basic information (title and date), used to skip unchanged rows.
+             */
+            CONTENT_HASH("INTEGER DEFAULT NULL"),
+            /**
+             * Hash of the details, used to skip unchanged rows.
+             */
+            DETAILS_HASH("INTEGER DEFAULT NULL"),
             ;
 
             public static final String TABLE_NAME = "events";
@@ -354,5 +919,56 @@ public class LocalDatabaseEventSource extends SQLiteOpenHelper implements ReadWr
                 this.sqlType = sqlType;
             }
         }
+
+        /**
+         * Full-text index on {@link Events#TITLE}. Rows are linked to {@link Events} by
+         * {@code docid = } {@link Events#DOC_ID}.
+         */
+        static class EventsFts {
+            public static final String TABLE_NAME = "events_fts";
+        }
+
+        /**
+         * Time and outcome of the last fetch of each query, by key.
+         *
+         * @see com.axllblc.worlddays.data.SyncMetadata
+         */
+        enum SyncMetadata {
+            QUERY_KEY("TEXT PRIMARY KEY"),
+            /**
+             * Milliseconds since the epoch.
+             */
+            LAST_FETCHED("INTEGER NOT NULL"),
+            /**
+             * Name of a {@link com.axllblc.worlddays.data.SyncMetadata.Outcome}.
+             */
+            OUTCOME("TEXT NOT NULL"),
+            ETAG("TEXT DEFAULT NULL"),
+            VERSION("INTEGER DEFAULT NULL"),
+            /**
+             * Milliseconds since the epoch.
+             */
+            HIGH_WATER_MARK("INTEGER DEFAULT NULL"),
+            /**
+             * Milliseconds since the epoch.
+             */
+            LAST_FULL_SYNC("INTEGER DEFAULT NULL"),
+            ;
+
+            public static final String TABLE_NAME = "sync_metadata";
+            public final String sqlType;
+
+            SyncMetadata(String sqlType) {
+                this.sqlType = sqlType;
+            }
+        }
+
+        /**
+         * Names of the indexes on {@link Events}.
+         */
+        static class Indexes {
+            public static final String EVENTS_BY_DATE = "events_by_date";
+            public static final String FAVORITES_BY_DATE = "favorites_by_date";
+        }
     }
 }
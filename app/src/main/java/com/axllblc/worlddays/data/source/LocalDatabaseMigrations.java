@@ -0,0 +1,152 @@
+package com.axllblc.worlddays.data.source;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Incremental migrations of the schema of {@link LocalDatabaseEventSource}.
+ * <p>
+ * Each migration upgrades the schema from version {@code n - 1} to version {@code n} in place,
+ * so cached events and favorites are kept across upgrades. Changes which cannot be done with
+ * {@code ALTER TABLE} must create the new table, copy the rows of the old one
+ * ({@code INSERT INTO ... SELECT ...}), then drop the old table and rename the new one.
+ * <p>
+ * To change the schema: increment {@link LocalDatabaseEventSource#VERSION}, update
+ * {@link LocalDatabaseEventSource#onCreate(SQLiteDatabase)} (used for new installations), and
+ * register a migration to the new version.
+ * <p>
+ * The SQL of each migration is written out in full, with the names of that version: it must not
+ * use {@link LocalDatabaseEventSource.DBContract} or the helpers of
+ * {@link LocalDatabaseEventSource}, which describe the latest schema only.
+ */
+class LocalDatabaseMigrations {
+    /**
+     * Step of the migration of the schema.
+     */
+    interface Migration {
+        /**
+         * Upgrades the schema to the version this migration is registered for, from the
+         * previous one.
+         */
+        void migrate(SQLiteDatabase db);
+    }
+
+    /**
+     * Migrations, by target version.
+     */
+    private static final Map<Integer, Migration> MIGRATIONS = new HashMap<>();
+
+    static {
+        // 1 → 2: hashes, used to skip unchanged rows when updating events
+        MIGRATIONS.put(2, db -> {
+            db.execSQL("ALTER TABLE events ADD COLUMN CONTENT_HASH INTEGER DEFAULT NULL");
+            db.execSQL("ALTER TABLE events ADD COLUMN DETAILS_HASH INTEGER DEFAULT NULL");
+        });
+
+        // 2 → 3: full-text index on titles (existing rows are indexed)
+        MIGRATIONS.put(3, db -> {
+            db.execSQL("CREATE VIRTUAL TABLE events_fts USING fts4("
+                    + "content=\"events\", TITLE, tokenize=unicode61 \"remove_diacritics=1\")");
+            db.execSQL("CREATE TRIGGER events_fts_before_update BEFORE UPDATE OF TITLE ON events "
+                    + "BEGIN DELETE FROM events_fts WHERE docid = old.rowid; END");
+            db.execSQL("CREATE TRIGGER events_fts_before_delete BEFORE DELETE ON events "
+                    + "BEGIN DELETE FROM events_fts WHERE docid = old.rowid; END");
+            db.execSQL("CREATE TRIGGER events_fts_after_update AFTER UPDATE OF TITLE ON events "
+                    + "BEGIN INSERT INTO events_fts (docid, TITLE) VALUES (new.rowid, new.TITLE); END");
+            db.execSQL("CREATE TRIGGER events_fts_after_insert AFTER INSERT ON events "
+                    + "BEGIN INSERT INTO events_fts (docid, TITLE) VALUES (new.rowid, new.TITLE); END");
+            db.execSQL("INSERT INTO events_fts (events_fts) VALUES ('rebuild')");
+        });
+
+        // 3 → 4: indexes on dates
+        MIGRATIONS.put(4, db -> {
+            db.execSQL("CREATE INDEX IF NOT EXISTS events_by_date "
+                    + "ON events (MONTH, DAY_OF_MONTH, ID, TITLE)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS favorites_by_date "
+                    + "ON events (MONTH, DAY_OF_MONTH, ID, TITLE) WHERE USER_FAVORITE = 1");
+        });
+
+        // 4 → 5: freshness of fetched queries (existing lists are revalidated once)
+        MIGRATIONS.put(5, db -> db.execSQL("CREATE TABLE sync_metadata ("
+                + "QUERY_KEY TEXT PRIMARY KEY, "
+                + "LAST_FETCHED INTEGER NOT NULL, "
+                + "OUTCOME TEXT NOT NULL, "
+                + "ETAG TEXT DEFAULT NULL)"));
+
+        // 5 → 6: version of the synced catalogue
+        MIGRATIONS.put(6, db -> db.execSQL(
+                "ALTER TABLE sync_metadata ADD COLUMN VERSION INTEGER DEFAULT NULL"));
+
+        // 6 → 7: high-water mark of the synced catalogue (the next sync is a full one)
+        MIGRATIONS.put(7, db -> db.execSQL(
+                "ALTER TABLE sync_metadata ADD COLUMN HIGH_WATER_MARK INTEGER DEFAULT NULL"));
+
+        // 7 → 8: stable integer key, used as docid of the full-text index (the events table is
+        // rebuilt, which drops its indexes and triggers; the full-text index is rebuilt too)
+        MIGRATIONS.put(8, db -> {
+            db.execSQL("DROP TABLE events_fts");
+            db.execSQL("CREATE TABLE events_new ("
+                    + "DOC_ID INTEGER PRIMARY KEY, "
+                    + "ID TEXT NOT NULL UNIQUE, "
+                    + "TITLE TEXT, "
+                    + "MONTH INTEGER, "
+                    + "DAY_OF_MONTH INTEGER, "
+                    + "WIKIPEDIA_URL TEXT DEFAULT NULL, "
+                    + "WIKIPEDIA_INTRO TEXT DEFAULT NULL, "
+                    + "INCEPTION TEXT DEFAULT NULL, "
+                    + "FOUNDER TEXT DEFAULT NULL, "
+                    + "DETAILS_FETCHED BOOLEAN DEFAULT FALSE, "
+                    + "USER_FAVORITE BOOLEAN DEFAULT FALSE, "
+                    + "CONTENT_HASH INTEGER DEFAULT NULL, "
+                    + "DETAILS_HASH INTEGER DEFAULT NULL)");
+            db.execSQL("INSERT INTO events_new (ID, TITLE, MONTH, DAY_OF_MONTH, WIKIPEDIA_URL, "
+                    + "WIKIPEDIA_INTRO, INCEPTION, FOUNDER, DETAILS_FETCHED, USER_FAVORITE, "
+                    + "CONTENT_HASH, DETAILS_HASH) "
+                    + "SELECT ID, TITLE, MONTH, DAY_OF_MONTH, WIKIPEDIA_URL, "
+                    + "WIKIPEDIA_INTRO, INCEPTION, FOUNDER, DETAILS_FETCHED, USER_FAVORITE, "
+                    + "CONTENT_HASH, DETAILS_HASH FROM events");
+            db.execSQL("DROP TABLE events");
+            db.execSQL("ALTER TABLE events_new RENAME TO events");
+
+            db.execSQL("CREATE INDEX events_by_date ON events (MONTH, DAY_OF_MONTH, ID, TITLE)");
+            db.execSQL("CREATE INDEX favorites_by_date "
+                    + "ON events (MONTH, DAY_OF_MONTH, ID, TITLE) WHERE USER_FAVORITE = 1");
+
+            db.execSQL("CREATE VIRTUAL TABLE events_fts USING fts4("
+                    + "content=\"events\", TITLE, tokenize=unicode61 \"remove_diacritics=1\")");
+            db.execSQL("CREATE TRIGGER events_fts_before_update BEFORE UPDATE OF TITLE ON events "
+                    + "BEGIN DELETE FROM events_fts WHERE docid = old.DOC_ID; END");
+            db.execSQL("CREATE TRIGGER events_fts_before_delete BEFORE DELETE ON events "
+                    + "BEGIN DELETE FROM events_fts WHERE docid = old.DOC_ID; END");
+            db.execSQL("CREATE TRIGGER events_fts_after_update AFTER UPDATE OF TITLE ON events "
+                    + "BEGIN INSERT INTO events_fts (docid, TITLE) VALUES (new.DOC_ID, new.TITLE); END");
+            db.execSQL("CREATE TRIGGER events_fts_after_insert AFTER INSERT ON events "
+                    + "BEGIN INSERT INTO events_fts (docid, TITLE) VALUES (new.DOC_ID, new.TITLE); END");
+            db.execSQL("INSERT INTO events_fts (events_fts) VALUES ('rebuild')");
+        });
+
+        // 8 → 9: time of the last full sync of the catalogue (the next sync is a full one)
+        MIGRATIONS.put(9, db -> db.execSQL(
+                "ALTER TABLE sync_metadata ADD COLUMN LAST_FULL_SYNC INTEGER DEFAULT NULL"));
+    }
+
+    private LocalDatabaseMigrations() {}
+
+    /**
+     * Upgrades the schema from {@code oldVersion} to {@code newVersion}, by applying each
+     * migration in order. Called inside a transaction by
+     * {@link LocalDatabaseEventSource#onUpgrade(SQLiteDatabase, int, int)}.
+     *
+     * @throws IllegalStateException If a migration is missing
+     */
+    static void migrate(SQLiteDatabase db, int oldVersion, int newVersion) {
+        for (int version = oldVersion + 1; version <= newVersion; version++) {
+            Migration migration = MIGRATIONS.get(version);
+            if (migration == null)
+                throw new IllegalStateException("No migration to version " + version);
+            migration.migrate(db);
+        }
+    }
+}
@@ -1,7 +1,30 @@
 package com.axllblc.worlddays.data.source;
 
 public class NotSuccessfulResponseException extends Exception {
+    /**
+     * HTTP status code of the response, or {@code -1} if unknown, or if the response does not come
+     * from the server.
+     */
+    private final int code;
+
     public NotSuccessfulResponseException(String string) {
+        this(string, -1);
+    }
+
+    public NotSuccessfulResponseException(String string, int code) {
         super(string);
+        this.code = code;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * Returns {@code true} if the server failed (5xx status code), for instance because the
+     * query timed out.
+     */
+    public boolean isServerError() {
+        return code >= 500 && code < 600;
     }
 }
@@ -3,5 +3,6 @@ package com.axllblc.worlddays.data.source;
 public interface ReadWriteEventSource extends
         ReadableEventSource,
         WritableEventSource,
-        FavoriteEventSource
+        FavoriteEventSource,
+        SyncMetadataSource
 {}
@@ -2,8 +2,10 @@ package com.axllblc.worlddays.data.source;
 
 import com.axllblc.worlddays.data.Event;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface ReadableEventSource {
     /**
@@ -14,7 +16,52 @@ public interface ReadableEventSource {
      * @return An {@link Optional} instance containing the {@link Event} with given {@code id}, if it exists.
      */
     Optional<Event> getEvent(String id, boolean withDetails) throws Exception;
+
+    /**
+     * Returns the {@link Event}s with given {@code ids}, in a single round trip when possible.
+     * IDs which do not exist (or, if {@code withDetails} is {@code true}, events without details)
+     * are omitted.
+     *
+     * @param ids Wikidata Q-IDs, such as "Q5305947".
+     * @param withDetails {@code true} to get details (wikipediaURL, wikipediaIntro, inception, founder)
+     * @return The {@link Event}s, in no particular order, without duplicates.
+     */
+    List<Event> getEvents(Collection<String> ids, boolean withDetails) throws Exception;
     List<Event> getAll() throws Exception;
     List<Event> getEventsByName(String str) throws Exception;
     List<Event> getEventsByMonth(int month) throws Exception;
+
+    /**
+     * Paged variant of {@link #getAll()}: passes the events to {@code onPage} in chunks of at
+     * most {@code pageSize} events, in the order of {@link #getAll()}, as soon as each chunk is
+     * available. Returns once the last chunk has been passed.
+     * <p>
+     * By default, all the events are fetched with {@link #getAll()}, then split into chunks.
+     *
+     * @param pageSize Maximum number of events per chunk
+     * @param onPage Called, from the calling thread, with each non-empty chunk
+     */
+    default void getAllPaged(int pageSize, Consumer<List<Event>> onPage) throws Exception {
+        deliverInPages(getAll(), pageSize, onPage);
+    }
+
+    /**
+     * Paged variant of {@link #getEventsByName(String)}.
+     * See {@link #getAllPaged(int, Consumer)}.
+     */
+    default void getEventsByNamePaged(String str, int pageSize, Consumer<List<Event>> onPage)
+            throws Exception {
+        deliverInPages(getEventsByName(str), pageSize, onPage);
+    }
+
+    /**
+     * Passes {@code events} to {@code onPage}, in chunks of at most {@code pageSize} events.
+     */
+    static void deliverInPages(List<Event> events, int pageSize, Consumer<List<Event>> onPage) {
+        if (pageSize <= 0) throw new IllegalArgumentException("pageSize must be positive");
+
+        for (int from = 0; from < events.size(); from += pageSize) {
+            onPage.accept(events.subList(from, Math.min(from + pageSize, events.size())));
+        }
+    }
 }
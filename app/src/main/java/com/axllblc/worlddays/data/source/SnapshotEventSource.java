@@ -0,0 +1,307 @@
+package com.axllblc.worlddays.data.source;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.util.Log;
+
+import com.axllblc.worlddays.data.Event;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import dagger.hilt.android.qualifiers.ApplicationContext;
+
+/**
+ * Read-only event source backed by a snapshot of the catalogue, bundled with the application
+ * (in assets, as {@code catalogue-<language>.bin}) and memory-mapped on first use. It is used
+ * until the catalogue has been synced, so that events can be shown without waiting for the
+ * network on first launch. It has no detailed events.
+ * <p>
+ * The bundled snapshots are only generated from the fixtures in {@code src/main/snapshot}, which
+ * hold a few events. Until these fixtures are replaced with a full export of the catalogue query,
+ * months without any snapshot event still wait for the network on first launch.
+ * <p>
+ * Snapshots are generated at build time from SPARQL results (see the
+ * {@code generateCatalogueSnapshots} task). All numbers are big-endian:
+ * <pre>
+ * Header
+ *   int    magic             {@link #MAGIC}
+ *   int    format version    {@link #FORMAT_VERSION}
+ *   int    number of events  N
+ *   int    size of the string pool, in bytes
+ * Day index (367 ints)
+ *   index[d] = number of events whose day of year (in a leap year) is ≤ d: the events of day d
+ *   are the entries index[d - 1] (included) to index[d] (excluded)
+ * Entries (N × 12 bytes), sorted by date, then by ID
+ *   int    number of the Q-ID (5305947 for Q5305947)
+ *   int    offset of the title in the string pool
+ *   byte   month
+ *   byte   day of month
+ *   short  reserved
+ * ID table (N × 8 bytes), sorted by ID
+ *   int    number of the Q-ID
+ *   int    index of the entry
+ * String pool
+ *   unsigned short length in bytes, followed by the UTF-8 bytes, for each string
+ * </pre>
+ */
+@Singleton
+public class SnapshotEventSource implements ReadableEventSource {
+    private static final String TAG = "SnapshotEventSource";
+
+    static final int MAGIC = 0x57444353;  // "WDCS"
+    static final int FORMAT_VERSION = 1;
+
+    static final int HEADER_SIZE = 16;
+    static final int DAY_INDEX_LENGTH = 367;
+    static final int ENTRY_SIZE = 12;
+    static final int ID_TABLE_ENTRY_SIZE = 8;
+
+    /**
+     * Leap year, used to compute days of year, so that February 29 has its own day.
+     */
+    private static final int LEAP_YEAR = 2000;
+
+    private final SnapshotLoader loader;
+    /**
+     * Snapshot, mapped on first use. {@code null} until then.
+     */
+    private ByteBuffer buffer = null;
+    /**
+     * {@code true} once the snapshot has been mapped (or has failed to be).
+     */
+    private boolean loaded = false;
+
+    private interface SnapshotLoader {
+        ByteBuffer load() throws IOException;
+    }
+
+    @Inject
+    public SnapshotEventSource(@ApplicationContext Context context) {
+        this(() -> map(context.getAssets(), assetName(Locale.getDefault().getLanguage())));
+    }
+
+    /**
+     * Creates an event source reading the given snapshot.
+     */
+    public SnapshotEventSource(ByteBuffer snapshot) {
+        this(() -> snapshot);
+    }
+
+    private SnapshotEventSource(SnapshotLoader loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * Returns the name of the asset containing the snapshot for given language.
+     */
+    static String assetName(String language) {
+        return "catalogue-" + language + ".bin";
+    }
+
+    /**
+     * Maps the given asset in memory. The asset must not be compressed.
+     */
+    private static ByteBuffer map(AssetManager assets, String name) throws IOException {
+        try (AssetFileDescriptor fd = assets.openFd(name);
+             FileInputStream in = fd.createInputStream()) {
+            // The mapping remains valid once the channel is closed
+            return in.getChannel().map(
+                    FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getLength()
+            );
+        }
+    }
+
+    /**
+     * Returns the snapshot, mapping it on first call, or {@code null} if there is no valid
+     * snapshot (for instance, none for the language of the device).
+     */
+    private synchronized ByteBuffer snapshot() {
+        if (!loaded) {
+            loaded = true;
+            try {
+                ByteBuffer snapshot = loader.load();
+                if (isValid(snapshot)) {
+                    buffer = snapshot;
+                } else {
+                    Log.w(TAG, "Ignoring invalid catalogue snapshot");
+                }
+            } catch (IOException e) {
+                Log.i(TAG, "No catalogue snapshot", e);
+            }
+        }
+        return buffer;
+    }
+
+    private static boolean isValid(ByteBuffer snapshot) {
+        if (snapshot.limit() < HEADER_SIZE
+                || snapshot.getInt(0) != MAGIC
+                || snapshot.getInt(4) != FORMAT_VERSION) return false;
+
+        long eventCount = snapshot.getInt(8);
+        long stringPoolSize = snapshot.getInt(12);
+        return eventCount >= 0 && stringPoolSize >= 0 && snapshot.limit() == HEADER_SIZE
+                + DAY_INDEX_LENGTH * 4L
+                + eventCount * (ENTRY_SIZE + ID_TABLE_ENTRY_SIZE)
+                + stringPoolSize;
+    }
+
+    private static int eventCount(ByteBuffer snapshot) {
+        return snapshot.getInt(8);
+    }
+
+    private static int entriesOffset() {
+        return HEADER_SIZE + DAY_INDEX_LENGTH * 4;
+    }
+
+    private static int idTableOffset(ByteBuffer snapshot) {
+        return entriesOffset() + eventCount(snapshot) * ENTRY_SIZE;
+    }
+
+    private static int stringPoolOffset(ByteBuffer snapshot) {
+        return idTableOffset(snapshot) + eventCount(snapshot) * ID_TABLE_ENTRY_SIZE;
+    }
+
+    /**
+     * Returns the index of the first entry after the events of given day of year.
+     */
+    private static int dayIndex(ByteBuffer snapshot, int dayOfYear) {
+        return snapshot.getInt(HEADER_SIZE + dayOfYear * 4);
+    }
+
+    private static Event readEvent(ByteBuffer snapshot, int index) {
+        int offset = entriesOffset() + index * ENTRY_SIZE;
+
+        String id = "Q" + snapshot.getInt(offset);
+        String title = readString(snapshot, snapshot.getInt(offset + 4));
+        MonthDay monthDay = MonthDay.of(snapshot.get(offset + 8), snapshot.get(offset + 9));
+
+        return new Event(id, title, monthDay);
+    }
+
+    private static String readString(ByteBuffer snapshot, int poolOffset) {
+        int offset = stringPoolOffset(snapshot) + poolOffset;
+        int length = snapshot.getShort(offset) & 0xFFFF;
+
+        // Absolute reads only: the buffer is shared by all threads
+        ByteBuffer bytes = snapshot.duplicate();
+        bytes.position(offset + 2);
+        byte[] utf8 = new byte[length];
+        bytes.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the events of the entries {@code from} (included) to {@code to} (excluded).
+     */
+    private static List<Event> readEvents(ByteBuffer snapshot, int from, int to) {
+        List<Event> events = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            events.add(readEvent(snapshot, i));
+        }
+        return events;
+    }
+
+    /**
+     * Returns the index of the entry of the event with given ID, or {@code -1}.
+     */
+    private static int findEntry(ByteBuffer snapshot, String id) {
+        int number;
+        try {
+            if (!id.startsWith("Q")) return -1;
+            number = Integer.parseInt(id.substring(1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+
+        // Binary search in the ID table
+        int idTableOffset = idTableOffset(snapshot);
+        int low = 0;
+        int high = eventCount(snapshot) - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int offset = idTableOffset + middle * ID_TABLE_ENTRY_SIZE;
+            int middleNumber = snapshot.getInt(offset);
+
+            if (middleNumber < number) {
+                low = middle + 1;
+            } else if (middleNumber > number) {
+                high = middle - 1;
+            } else {
+                return snapshot.getInt(offset + 4);
+            }
+        }
+        return -1;
+    }
+
+
+    // ReadableEventSource implementation
+
+    @Override
+    public Optional<Event> getEvent(String id, boolean withDetails) {
+        ByteBuffer snapshot = snapshot();
+        if (snapshot == null || withDetails) return Optional.empty();
+
+        int index = findEntry(snapshot, id);
+        return index < 0 ? Optional.empty() : Optional.of(readEvent(snapshot, index));
+    }
+
+    @Override
+    public List<Event> getEvents(Collection<String> ids, boolean withDetails) {
+        List<Event> events = new ArrayList<>();
+        for (String id : new LinkedHashSet<>(ids)) {
+            getEvent(id, withDetails).ifPresent(events::add);
+        }
+        return events;
+    }
+
+    @Override
+    public List<Event> getAll() {
+        ByteBuffer snapshot = snapshot();
+        if (snapshot == null) return new ArrayList<>();
+
+        return readEvents(snapshot, 0, eventCount(snapshot));
+    }
+
+    @Override
+    public List<Event> getEventsByName(String str) {
+        ByteBuffer snapshot = snapshot();
+        if (snapshot == null) return new ArrayList<>();
+
+        String lowerCaseStr = str.toLowerCase(Locale.ROOT);
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < eventCount(snapshot); i++) {
+            Event event = readEvent(snapshot, i);
+            if (event.getTitle().toLowerCase(Locale.ROOT).contains(lowerCaseStr))
+                events.add(event);
+        }
+        return events;
+    }
+
+    @Override
+    public List<Event> getEventsByMonth(int month) {
+        ByteBuffer snapshot = snapshot();
+        if (snapshot == null) return new ArrayList<>();
+
+        int firstDay = LocalDate.of(LEAP_YEAR, month, 1).getDayOfYear();
+        int lastDay = YearMonth.of(LEAP_YEAR, month).atEndOfMonth().getDayOfYear();
+
+        return readEvents(snapshot, dayIndex(snapshot, firstDay - 1), dayIndex(snapshot, lastDay));
+    }
+}
@@ -0,0 +1,24 @@
+package com.axllblc.worlddays.data.source;
+
+import com.axllblc.worlddays.data.SyncMetadata;
+
+import java.util.Optional;
+
+public interface SyncMetadataSource {
+    /**
+     * Returns the {@link SyncMetadata} of the query with given key, if it exists.
+     *
+     * @param queryKey Key of the query, such as {@link SyncMetadata#month(int)}
+     */
+    Optional<SyncMetadata> getSyncMetadata(String queryKey);
+
+    /**
+     * Inserts or replaces the {@link SyncMetadata} of a query.
+     */
+    void putSyncMetadata(SyncMetadata syncMetadata);
+
+    /**
+     * Deletes all the {@link SyncMetadata}, so that every query is considered as never fetched.
+     */
+    void deleteAllSyncMetadata();
+}
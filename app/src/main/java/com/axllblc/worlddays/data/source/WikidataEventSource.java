@@ -1,28 +1,49 @@
 package com.axllblc.worlddays.data.source;
 
+import android.util.JsonReader;
+
+import com.axllblc.worlddays.AppExecutors;
 import com.axllblc.worlddays.WorldDaysApplication;
+import com.axllblc.worlddays.data.CancellationToken;
 import com.axllblc.worlddays.data.Event;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.MonthDay;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
 
 import javax.inject.Inject;
 
+import okhttp3.Call;
 import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
 
-public class WikidataEventSource implements ReadableEventSource {
+public class WikidataEventSource implements ReadableEventSource, DeltaEventSource {
     private static final String API_ENDPOINT = "https://query.wikidata.org/sparql";
 
     // SELECT
@@ -101,6 +122,15 @@ public class WikidataEventSource implements ReadableEventSource {
                     "filter (lang(?worldDayLabel) = \"%s\" && " +
                         "CONTAINS(LCASE(?worldDayLabel), LCASE(\"%s\"))).";
 
+    /**
+     * Modification filter. Argument: {@code xsd:dateTime}, such as "2024-03-20T00:00:00Z".
+     * <p>
+     * <b>Selected column:</b> {@code ?modified}, time of the last edit of the item.
+     */
+    private static final String SPARQL_MODIFIED_SINCE =
+            "?worldDay schema:dateModified ?modified " +
+                    "filter (?modified > \"%s\"^^xsd:dateTime). ";
+
     // ORDER BY
 
     /**
@@ -109,19 +139,54 @@ public class WikidataEventSource implements ReadableEventSource {
     private static final String SPARQL_ORDER_BY =
             "xsd:integer(?month) xsd:integer(?dayOfMonth)";
 
+    /**
+     * Maximum number of IDs in the query of {@link #getEvents(Collection, boolean)}, to keep the
+     * URL short.
+     */
+    static final int MAX_IDS_PER_QUERY = 50;
+
+    /**
+     * <i>Order by</i> clause of paged queries. Events of the same day are ordered by ID, so that
+     * the order is total and pages do not overlap.
+     */
+    private static final String SPARQL_ORDER_BY_PAGED = SPARQL_ORDER_BY + " ?worldDay";
+
+    // Partitioned fetch
+
+    /**
+     * Default maximum number of month queries running at the same time in
+     * {@link #getAllPartitioned(int)}. Wikidata Query Service allows a few concurrent queries
+     * per client.
+     */
+    static final int DEFAULT_PARTITION_PARALLELISM = 3;
+
 
     private final OkHttpClient client;
+    /**
+     * Executor of the month queries of {@link #getAllPartitioned(int)}.
+     */
+    private final Executor networkExecutor;
+    /**
+     * Queries in flight, by SPARQL query.
+     *
+     * @see #query(String, boolean)
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<List<Event>>> inFlightQueries =
+            new ConcurrentHashMap<>();
 
     @Inject
-    public WikidataEventSource(OkHttpClient client) {
+    public WikidataEventSource(OkHttpClient client, AppExecutors executors) {
+        this(client, executors.network());
+    }
+
+    WikidataEventSource(OkHttpClient client, Executor networkExecutor) {
         this.client = client;
+        this.networkExecutor = networkExecutor;
     }
 
     @Override
     public Optional<Event> getEvent(String id, boolean withDetails) throws Exception {
-        try (Response response = executeQuery(getEventQuery(id, withDetails))) {
-            return handleResponse(response, withDetails).stream().findFirst();
-        }
+        return query(getEventQuery(id, withDetails), withDetails).stream().findFirst();
     }
 
     /**
@@ -147,55 +212,315 @@ public class WikidataEventSource implements ReadableEventSource {
         return qb.build();
     }
 
+    /**
+     * Returns the events with given IDs, using one query for each chunk of
+     * {@link #MAX_IDS_PER_QUERY} IDs.
+     */
+    @Override
+    public List<Event> getEvents(Collection<String> ids, boolean withDetails) throws Exception {
+        List<String> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        List<Event> events = new ArrayList<>(distinctIds.size());
+        // With details, an event has a row for each of its founders/inceptions: keep the first
+        Set<String> fetchedIds = new HashSet<>();
+
+        for (int from = 0; from < distinctIds.size(); from += MAX_IDS_PER_QUERY) {
+            List<String> chunk = distinctIds.subList(
+                    from, Math.min(from + MAX_IDS_PER_QUERY, distinctIds.size())
+            );
+
+            for (Event event : query(getEventsQuery(chunk, withDetails), withDetails)) {
+                if (fetchedIds.add(event.getId())) events.add(event);
+            }
+        }
+
+        return events;
+    }
+
+    /**
+     * Returns the SPARQL query for {@link #getEvents(Collection, boolean)}.
+     */
+    static String getEventsQuery(Collection<String> ids, boolean withDetails) {
+        QueryBuilder qb = new QueryBuilder();
+        String language = Locale.getDefault().getLanguage();
+
+        StringBuilder values = new StringBuilder("VALUES ?worldDay {");
+        for (String id : ids) values.append(" wd:").append(id);
+        values.append(" }");
+
+        qb.addSelect(SPARQL_SELECT)
+                .addWhere(values.toString())
+                .addWhere(SPARQL_WORLD_DAY_LABEL, language)
+                .addWhere(SPARQL_WHERE);
+
+        if (withDetails) {
+            qb.addSelect(SPARQL_SELECT_DETAILED)
+                    .addWhere(SPARQL_WHERE_DETAILED, language)
+                    .addWhere(SPARQL_WIKIPEDIA_URL, language, language)
+                    .addOrderBy("?worldDay ?inception");
+        }
+
+        return qb.build();
+    }
+
+    /**
+     * Returns all the events, using a single query. If this query times out, events are
+     * fetched month by month with {@link #getAllPartitioned(int)}.
+     */
     @Override
     public List<Event> getAll() throws Exception {
-        try (Response response = executeQuery(getAllQuery())) {
-            return handleResponse(response);
+        try {
+            return query(getAllQuery(), false);
+        } catch (NotSuccessfulResponseException e) {
+            // Timeouts of the query service are reported with 500 or 504; other failures
+            // (throttling, unavailability, no network) would also affect the partitioned fetch
+            if (e.getCode() != 500 && e.getCode() != 504) throw e;
+        } catch (InterruptedIOException e) {
+            // Client-side timeout (unless the call has been cancelled)
+            if (isCancelled()) throw e;
         }
+
+        return getAllPartitioned(DEFAULT_PARTITION_PARALLELISM);
+    }
+
+    /**
+     * Returns all the events, by running the query of {@link #getEventsByMonth(int)} for each
+     * month, on the network pool of the application. Up to {@code parallelism} queries run at the
+     * same time. Transient failures of a month query are retried by the HTTP client (see
+     * {@link com.axllblc.worlddays.data.source.http.RetryInterceptor}), without running the other
+     * queries again.
+     * <p>
+     * Each query is much cheaper than the one of {@link #getAll()}, so it is unlikely to reach
+     * the timeout of Wikidata Query Service.
+     *
+     * @param parallelism Maximum number of queries running at the same time
+     * @return Events, sorted by date
+     * @throws Exception If a month query fails
+     */
+    public List<Event> getAllPartitioned(int parallelism) throws Exception {
+        CancellationToken cancellationToken = CancellationToken.current();
+        Semaphore permits = new Semaphore(Math.max(1, parallelism));
+
+        List<FutureTask<List<Event>>> partitions = new ArrayList<>(12);
+        for (int month = 1; month <= 12; month++) {
+            int partitionMonth = month;
+            FutureTask<List<Event>> partition = new FutureTask<>(() -> {
+                permits.acquire();
+                try {
+                    // Requests are cancelled with the task which started the fetch, if any
+                    if (cancellationToken == null) return getEventsByMonth(partitionMonth);
+
+                    List<List<Event>> result = new ArrayList<>(1);
+                    Exception[] exception = new Exception[1];
+                    cancellationToken.runWith(() -> {
+                        try {
+                            result.add(getEventsByMonth(partitionMonth));
+                        } catch (Exception e) {
+                            exception[0] = e;
+                        }
+                    });
+                    if (exception[0] != null) throw exception[0];
+                    return result.get(0);
+                } finally {
+                    permits.release();
+                }
+            });
+            partitions.add(partition);
+            networkExecutor.execute(partition);
+        }
+
+        try {
+            // Months are in order, and each month is sorted by date
+            List<Event> events = new ArrayList<>();
+            Set<String> ids = new HashSet<>();
+            for (FutureTask<List<Event>> partition : partitions) {
+                // Fetch the month in this thread if no thread of the pool has started it yet:
+                // this thread may be one of them, so waiting could block the pool
+                partition.run();
+                try {
+                    for (Event event : partition.get()) {
+                        if (ids.add(event.getId())) events.add(event);
+                    }
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+            return events;
+        } finally {
+            // After a failure, months which have not started are not fetched
+            for (FutureTask<List<Event>> partition : partitions) partition.cancel(false);
+        }
+    }
+
+    /**
+     * Returns {@code true} if the task running this method has been cancelled.
+     */
+    private static boolean isCancelled() {
+        CancellationToken cancellationToken = CancellationToken.current();
+        return cancellationToken != null && cancellationToken.isCancelled();
     }
 
     /**
      * Returns the SPARQL query for {@link #getAll()}.
      */
     static String getAllQuery() {
+        return newAllQuery().addOrderBy(SPARQL_ORDER_BY).build();
+    }
+
+    /**
+     * Returns the SPARQL query for a page of {@link #getAllPaged(int, Consumer)}.
+     */
+    static String getAllQuery(int pageSize, int offset) {
+        return newAllQuery().addOrderBy(SPARQL_ORDER_BY_PAGED)
+                .limit(pageSize)
+                .offset(offset)
+                .build();
+    }
+
+    /**
+     * Returns a {@link QueryBuilder} for the query of {@link #getAll()}, without order.
+     */
+    private static QueryBuilder newAllQuery() {
         QueryBuilder qb = new QueryBuilder();
         String language = Locale.getDefault().getLanguage();
 
-        qb.addSelect(SPARQL_SELECT)
+        return qb.addSelect(SPARQL_SELECT)
                 .addWhere(SPARQL_WORLD_DAY_LABEL, language)
-                .addWhere(SPARQL_WHERE)
-                .addOrderBy(SPARQL_ORDER_BY);
+                .addWhere(SPARQL_WHERE);
+    }
+
+    /**
+     * Fetches the events of {@link #getAll()} page by page, with {@code LIMIT} and
+     * {@code OFFSET}. Pages are not cheaper to compute than the whole list: Wikidata Query Service
+     * evaluates the whole query (joins and sort) for each page, then skips {@code OFFSET}
+     * results. Only the transfer and parsing of each page are shorter, so the first events are
+     * shown before the whole list has been downloaded, at the cost of one evaluation per page:
+     * {@code pageSize} should be large enough for the list to fit in a few pages.
+     */
+    @Override
+    public void getAllPaged(int pageSize, Consumer<List<Event>> onPage) throws Exception {
+        queryPaged(offset -> getAllQuery(pageSize, offset), pageSize, onPage);
+    }
+
+    @Override
+    public void getEventsByNamePaged(String str, int pageSize, Consumer<List<Event>> onPage)
+            throws Exception {
+        queryPaged(offset -> getEventsByNameQuery(str, pageSize, offset), pageSize, onPage);
+    }
+
+    /**
+     * Runs a paged query page by page, and passes each non-empty page to {@code onPage}. The last
+     * page is the first one with less than {@code pageSize} results.
+     *
+     * @param pageQuery Returns the query of the page starting at given offset
+     */
+    private void queryPaged(IntFunction<String> pageQuery, int pageSize,
+                            Consumer<List<Event>> onPage) throws Exception {
+        if (pageSize <= 0) throw new IllegalArgumentException("pageSize must be positive");
+
+        for (int offset = 0; ; offset += pageSize) {
+            if (isCancelled()) throw new InterruptedIOException("Canceled");
+
+            List<Event> page = query(pageQuery.apply(offset), false);
+            if (!page.isEmpty()) onPage.accept(page);
+            if (page.size() < pageSize) return;
+        }
+    }
+
+    @Override
+    public ModifiedEvents getEventsModifiedSince(Instant since) throws Exception {
+        List<Event> events = new ArrayList<>();
+        Set<String> ids = new HashSet<>();
+        long[] latestModification = {Long.MIN_VALUE};
+
+        executeQuery(getEventsModifiedSinceQuery(since), binding -> {
+            long modified = Instant.parse(getValueInBinding(binding, "modified"))
+                    .toEpochMilli();
+            latestModification[0] = Math.max(latestModification[0], modified);
+
+            // Events on several days are kept on their first day, as with getAll()
+            Event event = bindingToEvent(binding, false);
+            if (ids.add(event.getId())) events.add(event);
+        });
+
+        return new ModifiedEvents(
+                events,
+                events.isEmpty() ? null : latestModification[0]
+        );
+    }
+
+    /**
+     * Returns the SPARQL query for {@link #getEventsModifiedSince(Instant)}.
+     */
+    static String getEventsModifiedSinceQuery(Instant since) {
+        return newAllQuery()
+                .addSelect("?modified")
+                .addWhere(SPARQL_MODIFIED_SINCE, since.truncatedTo(ChronoUnit.SECONDS))
+                .addOrderBy(SPARQL_ORDER_BY)
+                .build();
+    }
+
+    @Override
+    public Set<String> getAllIds() throws Exception {
+        Set<String> ids = new HashSet<>();
+
+        executeQuery(getAllIdsQuery(), binding -> ids.add(idInBinding(binding)));
+
+        return ids;
+    }
+
+    /**
+     * Returns the SPARQL query for {@link #getAllIds()}: the query of {@link #getAll()}, which
+     * only selects IDs (no label nor date has to be sent).
+     */
+    static String getAllIdsQuery() {
+        QueryBuilder qb = new QueryBuilder();
+        String language = Locale.getDefault().getLanguage();
+
+        qb.addSelect("DISTINCT ?worldDay")
+                .addWhere(SPARQL_WORLD_DAY_LABEL, language)
+                .addWhere(SPARQL_WHERE);
 
         return qb.build();
     }
 
     @Override
     public List<Event> getEventsByName(String str) throws Exception {
-        try (Response response = executeQuery(getEventsByNameQuery(str))) {
-            return handleResponse(response);
-        }
+        return query(getEventsByNameQuery(str), false);
     }
 
     /**
      * Returns the SPARQL query for {@link #getEventsByName(String)}.
      */
     static String getEventsByNameQuery(String str) {
+        return newEventsByNameQuery(str).addOrderBy(SPARQL_ORDER_BY).build();
+    }
+
+    /**
+     * Returns the SPARQL query for a page of {@link #getEventsByNamePaged(String, int, Consumer)}.
+     */
+    static String getEventsByNameQuery(String str, int pageSize, int offset) {
+        return newEventsByNameQuery(str).addOrderBy(SPARQL_ORDER_BY_PAGED)
+                .limit(pageSize)
+                .offset(offset)
+                .build();
+    }
+
+    /**
+     * Returns a {@link QueryBuilder} for the query of {@link #getEventsByName(String)}, without
+     * order.
+     */
+    private static QueryBuilder newEventsByNameQuery(String str) {
         QueryBuilder qb = new QueryBuilder();
         String language = Locale.getDefault().getLanguage();
 
-        qb.addSelect(SPARQL_SELECT)
+        return qb.addSelect(SPARQL_SELECT)
                 .addWhere(SPARQL_WHERE)
-                .addWhere(SPARQL_LABEL_FILTER, language, str.replace("\"", "\\\""))
-                .addOrderBy(SPARQL_ORDER_BY);
-
-        return qb.build();
+                .addWhere(SPARQL_LABEL_FILTER, language, str.replace("\"", "\\\""));
     }
 
     @Override
     public List<Event> getEventsByMonth(int month) throws Exception {
-        try (Response response = executeQuery(getEventsByMonthQuery(month))) {
-            return handleResponse(response);
-        }
+        return query(getEventsByMonthQuery(month), false);
     }
 
     /**
@@ -215,12 +540,88 @@ public class WikidataEventSource implements ReadableEventSource {
     }
 
     /**
-     * Executes the SPARQL query, using {@link #client}, and returns a {@link Response} object.
+     * Executes the SPARQL query and returns the {@link Event}s of the response.
+     * <p>
+     * Identical queries are coalesced (<i>single flight</i>): while a query is in flight,
+     * callers running the same query wait for it and share its result, instead of sending their
+     * own request. Results are thus shared, and must not be modified. If the caller which sent
+     * the request is cancelled, the callers waiting for it run the query again themselves.
+     *
+     * @param query SPARQL query, as string
+     * @param withDetails {@code true} to create {@code Event} objects with details
+     *                    (wikipediaURL, inception, founder)
+     * @return Unmodifiable {@link List} of {@link Event}s
+     */
+    private List<Event> query(String query, boolean withDetails) throws Exception {
+        while (true) {
+            CompletableFuture<List<Event>> call = new CompletableFuture<>();
+            CompletableFuture<List<Event>> inFlightCall = inFlightQueries.putIfAbsent(query, call);
+
+            if (inFlightCall == null) {
+                // No identical query in flight: send the request
+                try {
+                    List<Event> events = new ArrayList<>();
+                    executeQuery(query, binding -> events.add(bindingToEvent(binding, withDetails)));
+                    List<Event> result = Collections.unmodifiableList(events);
+                    call.complete(result);
+                    return result;
+                } catch (Exception e) {
+                    call.completeExceptionally(isCancelled() ? new CancelledQueryException(e) : e);
+                    throw e;
+                } finally {
+                    inFlightQueries.remove(query, call);
+                }
+            }
+
+            // Wait for the identical query (stop waiting if this caller is cancelled)
+            CompletableFuture<List<Event>> result = inFlightCall.thenApply(events -> events);
+            CancellationToken cancellationToken = CancellationToken.current();
+            Runnable stopWaiting = () -> result.cancel(false);
+            if (cancellationToken != null) cancellationToken.onCancel(stopWaiting);
+
+            try {
+                return result.get();
+            } catch (CancellationException e) {
+                throw new IOException("Canceled", e);
+            } catch (ExecutionException e) {
+                // The caller which sent the request has been cancelled: try again
+                if (e.getCause() instanceof CancelledQueryException && !isCancelled()) continue;
+
+                Throwable cause = e.getCause() instanceof CancelledQueryException
+                        ? e.getCause().getCause()
+                        : e.getCause();
+                throw cause instanceof Exception ? (Exception) cause : e;
+            } finally {
+                if (cancellationToken != null) cancellationToken.removeOnCancel(stopWaiting);
+            }
+        }
+    }
+
+    /**
+     * Failure of a query whose caller has been cancelled.
+     */
+    private static class CancelledQueryException extends Exception {
+        CancelledQueryException(Exception cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * Executes the SPARQL query, using {@link #client}, and passes the bindings of the response
+     * to {@code consumer}, one by one.
+     * <p>
+     * The response body is read as a stream of JSON tokens, directly from the network: each
+     * binding is passed as soon as it has been read, so the whole document is never held in
+     * memory. The request, including the reading of the body, is cancelled with the task which
+     * started it, if any.
+     *
      * @param query SPARQL query, as string
-     * @return {@link Response} object
-     * @throws IOException If the request failed
+     * @param consumer Called for each binding, in the order of the results
+     * @throws NotSuccessfulResponseException If the response is not successful
+     * @throws IOException If the request failed, or has been cancelled, or if reading or parsing
+     * the response body failed
      */
-    private Response executeQuery(String query) throws IOException {
+    private void executeQuery(String query, BindingConsumer consumer) throws Exception {
         // Build the URL
         //noinspection DataFlowIssue
         HttpUrl url = HttpUrl.parse(API_ENDPOINT).newBuilder()
@@ -235,67 +636,147 @@ public class WikidataEventSource implements ReadableEventSource {
                 .build();
 
         // Execute the request
-        return client.newCall(get).execute();
+        Call call = client.newCall(get);
+        CancellationToken cancellationToken = CancellationToken.current();
+        Runnable cancelCall = call::cancel;
+        if (cancellationToken != null) cancellationToken.onCancel(cancelCall);
+
+        try (Response response = call.execute()) {
+            readBindings(response, consumer);
+        } finally {
+            // The token lives as long as the task, which may send many more requests
+            if (cancellationToken != null) cancellationToken.removeOnCancel(cancelCall);
+        }
     }
 
-    private List<Event> handleResponse(Response response) throws Exception {
-        return handleResponse(response, false);
+    /**
+     * Called with each binding of a response, by {@link #parseBindings(Reader, BindingConsumer)}.
+     */
+    interface BindingConsumer {
+        /**
+         * @param binding Values of the binding, by variable name. The map is reused for the next
+         *                binding: it must not be kept.
+         * @throws IOException If the binding is not valid
+         */
+        void accept(Map<String, String> binding) throws IOException;
     }
 
     /**
-     * Builds a {@link List} of {@link Event}s from a {@link Response} object.
-     * @param response {@link Response} object
-     * @param withDetails {@code true} to create {@code Event} objects with details
-     *                    (wikipediaURL, inception, founder)
-     * @return {@link List} of {@link Event}s
+     * Reads the bindings contained in a {@link Response} object, and passes them one by one to
+     * {@code consumer}, as soon as they have been read.
+     *
+     * @throws NotSuccessfulResponseException If the response is not successful
+     * @throws IOException If reading or parsing the response body failed
      */
-    private List<Event> handleResponse(Response response, boolean withDetails) throws Exception {
-        if (response.isSuccessful()) {
-            List<Event> events = new ArrayList<>();
-            String body = response.body().string();
+    private static void readBindings(Response response, BindingConsumer consumer)
+            throws Exception {
+        if (!response.isSuccessful()) {
+            // The status code of a response which does not come from the server (such as the 504
+            // of a request which cannot be answered from the cache while offline) is not reported
+            int code = response.networkResponse() != null ? response.code() : -1;
+            throw new NotSuccessfulResponseException(response.toString(), code);
+        }
 
-            JSONArray bindings = new JSONObject(body)
-                    .getJSONObject("results")
-                    .getJSONArray("bindings");
+        //noinspection DataFlowIssue
+        parseBindings(response.body().charStream(), consumer);
+    }
 
-            for (int i = 0; i < bindings.length(); i++) {
-                events.add(jsonToEvent(bindings.getJSONObject(i), withDetails));
+    /**
+     * Reads the bindings of a response body in the SPARQL 1.1 Query Results JSON Format, and
+     * passes them one by one to {@code consumer}, as soon as they have been read. Unknown
+     * members, and members of a value other than {@code value} (such as {@code type} or
+     * {@code xml:lang}), are skipped.
+     *
+     * @throws IOException If reading or parsing the body failed
+     */
+    static void parseBindings(Reader body, BindingConsumer consumer) throws IOException {
+        try (JsonReader reader = new JsonReader(body)) {
+            // {"head": {...}, "results": {"bindings": [...]}}
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("results")) {
+                    reader.skipValue();
+                    continue;
+                }
+
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (!reader.nextName().equals("bindings")) {
+                        reader.skipValue();
+                        continue;
+                    }
+
+                    // The same map is reused for every binding
+                    Map<String, String> binding = new HashMap<>();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        readBinding(reader, binding);
+                        consumer.accept(binding);
+                        binding.clear();
+                    }
+                    reader.endArray();
+                }
+                reader.endObject();
             }
+            reader.endObject();
+        }
+    }
 
-            return events;
-        } else throw new NotSuccessfulResponseException(response.toString());
+    /**
+     * Reads a binding (a JSON object such as {@code {"month": {"type": "literal", "value": "3"}}})
+     * and puts the value of each variable in {@code binding}.
+     * @param reader {@link JsonReader}, positioned before the binding
+     * @param binding Map in which values are put, by variable name
+     * @throws IOException If parsing failed
+     */
+    private static void readBinding(JsonReader reader, Map<String, String> binding)
+            throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("value")) {
+                    binding.put(name, reader.nextString());
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endObject();
     }
 
     /**
-     * Creates an {@link Event} from a JSON object returned by Wikidata Query Service.
-     * @param object JSON Object
+     * Creates an {@link Event} from a binding returned by Wikidata Query Service.
+     * @param binding Values of the binding, by variable name
      * @param withDetails {@code true} to create an {@code Event} object with details
      *                    (wikipediaURL, inception, founder)
      * @return An {@link Event}
-     * @throws JSONException If parsing failed
+     * @throws IOException If a required value is missing
      */
-    private Event jsonToEvent(JSONObject object, boolean withDetails) throws JSONException {
-        String id = getValueInJsonObject(object, "worldDay")
-                .replaceFirst("^.+/", "");
-        // Example : http://www.wikidata.org/entity/Q5305947 → Q5305947
+    static Event bindingToEvent(Map<String, String> binding, boolean withDetails)
+            throws IOException {
+        String id = idInBinding(binding);
 
-        String title = getValueInJsonObject(object, "worldDayLabel");
+        String title = getValueInBinding(binding, "worldDayLabel");
 
-        int month = Integer.parseInt(getValueInJsonObject(object, "month"));
-        int dayOfMonth = Integer.parseInt(getValueInJsonObject(object, "dayOfMonth"));
+        int month = Integer.parseInt(getValueInBinding(binding, "month"));
+        int dayOfMonth = Integer.parseInt(getValueInBinding(binding, "dayOfMonth"));
         MonthDay monthDay = MonthDay.of(month, dayOfMonth);
 
         if (withDetails) {
-            String article = getNullableValueInJsonObject(object, "article");
+            String article = binding.get("article");
 
-            String inceptionString = getNullableValueInJsonObject(object, "inception");
+            String inceptionString = binding.get("inception");
             LocalDate inception = null;
             if (inceptionString != null)
                 inception = LocalDate.parse(inceptionString
                         .replaceFirst("T.+$", "")  // Remove time & zone
                 );
 
-            String founder = getNullableValueInJsonObject(object, "founder");
+            String founder = binding.get("founderLabel");
 
             return new Event(id, title, monthDay, article, null, inception, founder);
         } else /* if (!withDetails) */ {
@@ -303,15 +784,23 @@ public class WikidataEventSource implements ReadableEventSource {
         }
     }
 
-    private String getValueInJsonObject(JSONObject object, String name) throws JSONException {
-        return object.getJSONObject(name).getString("value");
+    /**
+     * Returns the ID of the event of a binding.
+     * @throws IOException If the ID is missing
+     */
+    private static String idInBinding(Map<String, String> binding) throws IOException {
+        return getValueInBinding(binding, "worldDay")
+                .replaceFirst("^.+/", "");
+        // Example : http://www.wikidata.org/entity/Q5305947 → Q5305947
     }
 
-    private String getNullableValueInJsonObject(JSONObject object, String name) throws JSONException {
-        return object.has(name) ? getValueInJsonObject(object, name) : null;
+    private static String getValueInBinding(Map<String, String> binding, String name)
+            throws IOException {
+        String value = binding.get(name);
+        if (value == null) throw new IOException("Missing value in binding: " + name);
+        return value;
     }
 
-
     /**
      * Simple SPARQL query builder.
      */
@@ -323,6 +812,7 @@ public class WikidataEventSource implements ReadableEventSource {
         private final List<String> where = new ArrayList<>();
         private final List<String> orderBy = new ArrayList<>();
         private Integer limit = null;
+        private Integer offset = null;
 
         public QueryBuilder addSelect(String select) {
             this.select.add(select);
@@ -348,6 +838,11 @@ public class WikidataEventSource implements ReadableEventSource {
             return this;
         }
 
+        public QueryBuilder offset(int offset) {
+            this.offset = offset;
+            return this;
+        }
+
         /**
          * Build SPARQL query
          * @return SPARQL query, as {@link String}
@@ -360,6 +855,8 @@ public class WikidataEventSource implements ReadableEventSource {
                 sb.append(" ORDER BY ").append(String.join(" ", orderBy));
             if (limit != null)
                 sb.append(" LIMIT ").append(limit);
+            if (offset != null)
+                sb.append(" OFFSET ").append(offset);
             return sb.toString();
         }
     }
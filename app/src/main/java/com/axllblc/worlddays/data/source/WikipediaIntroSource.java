@@ -2,6 +2,18 @@ package com.axllblc.worlddays.data.source;
 
 import com.axllblc.worlddays.data.Result;
 
+import java.util.Collection;
+import java.util.Map;
+
 public interface WikipediaIntroSource {
     Result<String> getArticleIntro(String articleURL);
+
+    /**
+     * Fetches the introduction of several Wikipedia articles, using as few requests as possible.
+     *
+     * @param articleURLs Wikipedia article URLs, possibly from different wikis
+     * @return Introductions, as plain text, by article URL. Articles without introduction are
+     * omitted. In case of error, introductions fetched before the error are returned as fallback.
+     */
+    Result<Map<String, String>> getArticleIntros(Collection<String> articleURLs);
 }
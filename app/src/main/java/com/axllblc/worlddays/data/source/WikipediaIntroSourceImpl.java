@@ -1,13 +1,22 @@
 package com.axllblc.worlddays.data.source;
 
+import android.util.Log;
+
 import com.axllblc.worlddays.WorldDaysApplication;
 import com.axllblc.worlddays.data.Result;
 
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -21,10 +30,27 @@ import okhttp3.Response;
 /**
  * Class that fetches the introduction of Wikipedia articles.
  * 
- * @see #getArticleIntro(String) 
+ * @see #getArticleIntro(String)
+ * @see #getArticleIntros(Collection)
  */
 public class WikipediaIntroSourceImpl implements WikipediaIntroSource {
+    private static final String TAG = "WikipediaIntroSource";
+
     private static final String API_ENDPOINT = "https://%s.wikipedia.org/w/api.php";
+    /**
+     * Maximum number of extracts returned by a request, when only introductions are requested.
+     */
+    static final int MAX_TITLES_PER_REQUEST = 20;
+    /**
+     * Time during which responses can be served by the HTTP cache (the API sets
+     * {@code Cache-Control: max-age} accordingly). Intros rarely change.
+     */
+    private static final int CACHE_MAX_AGE_SECONDS = 24 * 60 * 60;
+    /**
+     * Wikipedia article URL. Groups: wiki ID (such as "en" or "zh-min-nan"), title.
+     */
+    private static final Pattern ARTICLE_URL_PATTERN =
+            Pattern.compile("^https?://([\\w-]+)\\.wikipedia.org/wiki/(.+)$");
 
     private final OkHttpClient client;
 
@@ -63,12 +89,148 @@ public class WikipediaIntroSourceImpl implements WikipediaIntroSource {
         }
     }
 
+    /**
+     * Fetches the introduction of the given Wikipedia articles. Articles are grouped by wiki,
+     * and the introductions of up to {@link #MAX_TITLES_PER_REQUEST} articles of the same wiki
+     * are fetched with a single request. URLs which are not Wikipedia article URLs are skipped.
+     * @param articleURLs Wikipedia article URLs, such as {@code https://en.wikipedia.org/wiki/International_Day_of_Happiness}
+     * @return Introductions, as plain text, by article URL
+     */
+    @Override
+    public Result<Map<String, String>> getArticleIntros(Collection<String> articleURLs) {
+        Map<String, String> intros = new HashMap<>();
+
+        try {
+            // Titles (as requested) and article URLs, by wiki
+            Map<String, Map<String, String>> urlsByTitleByWiki = new LinkedHashMap<>();
+            for (String articleURL : articleURLs) {
+                Matcher matcher = ARTICLE_URL_PATTERN.matcher(articleURL);
+                HttpUrl url = HttpUrl.parse(articleURL);
+                if (url == null || !matcher.find()) {
+                    // The intros of the other articles can still be fetched
+                    Log.w(TAG, "Not a Wikipedia article URL: " + articleURL);
+                    continue;
+                }
+
+                // Percent-decoded title, such as "Día_de_la_Paz" (normalized by the API)
+                List<String> pathSegments = url.pathSegments();
+                String title = String.join("/", pathSegments.subList(1, pathSegments.size()));
+                urlsByTitleByWiki.computeIfAbsent(matcher.group(1), wiki -> new LinkedHashMap<>())
+                        .put(title, articleURL);
+            }
+
+            for (Map.Entry<String, Map<String, String>> entry : urlsByTitleByWiki.entrySet()) {
+                List<String> titles = new ArrayList<>(entry.getValue().keySet());
+
+                for (int from = 0; from < titles.size(); from += MAX_TITLES_PER_REQUEST) {
+                    List<String> chunk = titles.subList(
+                            from, Math.min(from + MAX_TITLES_PER_REQUEST, titles.size())
+                    );
+                    Map<String, String> introsByTitle = fetchIntros(entry.getKey(), chunk);
+
+                    for (String title : chunk) {
+                        String intro = introsByTitle.get(title);
+                        if (intro != null) intros.put(entry.getValue().get(title), intro);
+                    }
+                }
+            }
+        } catch (IOException | JSONException | NotSuccessfulResponseException e) {
+            return Result.error(e, intros);
+        }
+
+        return Result.success(intros);
+    }
+
+    /**
+     * Fetches the introductions of the articles of {@code wiki} with given titles, with a single
+     * request.
+     * @param wiki Wiki ID, such as "en"
+     * @param titles Titles, as written in article URLs (at most {@link #MAX_TITLES_PER_REQUEST})
+     * @return Introductions, by requested title
+     */
+    private Map<String, String> fetchIntros(String wiki, List<String> titles)
+            throws IOException, JSONException, NotSuccessfulResponseException {
+        //noinspection DataFlowIssue
+        HttpUrl url = HttpUrl.parse(String.format(API_ENDPOINT, wiki)).newBuilder()
+                .addQueryParameter("action", "query")
+                .addQueryParameter("format", "json")
+                .addQueryParameter("prop", "extracts")
+                .addQueryParameter("formatversion", "2")
+                .addQueryParameter("exintro", "1")
+                .addQueryParameter("explaintext", "1")
+                .addQueryParameter("maxage", String.valueOf(CACHE_MAX_AGE_SECONDS))
+                .addQueryParameter("exlimit", String.valueOf(MAX_TITLES_PER_REQUEST))
+                .addQueryParameter("redirects", "1")
+                .addQueryParameter("titles", String.join("|", titles))
+                .build();
+
+        Request get = new Request.Builder()
+                .url(url)
+                .addHeader("User-Agent", WorldDaysApplication.USER_AGENT)
+                .build();
+
+        try (Response response = client.newCall(get).execute()) {
+            if (!response.isSuccessful())
+                throw new NotSuccessfulResponseException(response.toString(), response.code());
+
+            //noinspection DataFlowIssue
+            JSONObject query = new JSONObject(response.body().string()).getJSONObject("query");
+            return mapIntrosToTitles(query, titles);
+        }
+    }
+
+    /**
+     * Maps the extracts of a query result to the requested titles. The API reports the pages by
+     * their final title: requested titles are first normalized ("Day_of_Peace" → "Day of Peace"),
+     * then redirects are followed.
+     * @param query {@code query} object of the response
+     * @param titles Requested titles
+     * @return Introductions, by requested title
+     */
+    static Map<String, String> mapIntrosToTitles(JSONObject query, List<String> titles)
+            throws JSONException {
+        Map<String, String> normalized = fromToMap(query.optJSONArray("normalized"));
+        Map<String, String> redirects = fromToMap(query.optJSONArray("redirects"));
+
+        Map<String, String> extractsByTitle = new HashMap<>();
+        JSONArray pages = query.getJSONArray("pages");
+        for (int i = 0; i < pages.length(); i++) {
+            JSONObject page = pages.getJSONObject(i);
+            if (page.has("extract")) {
+                extractsByTitle.put(page.getString("title"), page.getString("extract"));
+            }
+        }
+
+        Map<String, String> intros = new HashMap<>();
+        for (String title : titles) {
+            String finalTitle = normalized.containsKey(title) ? normalized.get(title) : title;
+            if (redirects.containsKey(finalTitle)) finalTitle = redirects.get(finalTitle);
+
+            String extract = extractsByTitle.get(finalTitle);
+            if (extract != null) intros.put(title, extract);
+        }
+        return intros;
+    }
+
+    /**
+     * Converts an array such as {@code [{"from": "a", "to": "b"}]} to a map.
+     */
+    private static Map<String, String> fromToMap(JSONArray array) throws JSONException {
+        Map<String, String> map = new HashMap<>();
+        if (array == null) return map;
+
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject item = array.getJSONObject(i);
+            map.put(item.getString("from"), item.getString("to"));
+        }
+        return map;
+    }
+
     private static HttpUrl getArticleURL(String articleURL) throws URISyntaxException {
         // Extract the wiki ID and the title of the article
-        Pattern pattern = Pattern.compile("^https?://(\\w+)\\.wikipedia.org/wiki/(.+)$");
-        Matcher matcher = pattern.matcher(articleURL);
-        //noinspection ResultOfMethodCallIgnored
-        matcher.find();
+        Matcher matcher = ARTICLE_URL_PATTERN.matcher(articleURL);
+        if (!matcher.find())
+            throw new URISyntaxException(articleURL, "Not a Wikipedia article URL");
 
         String wiki = matcher.group(1);
         String title = matcher.group(2);
@@ -83,6 +245,7 @@ public class WikipediaIntroSourceImpl implements WikipediaIntroSource {
                 .addQueryParameter("formatversion", "2")
                 .addQueryParameter("exintro", "1")
                 .addQueryParameter("explaintext", "1")
+                .addQueryParameter("maxage", String.valueOf(CACHE_MAX_AGE_SECONDS))
                 .addEncodedQueryParameter("titles", title);
 
         return uriBuilder.build();
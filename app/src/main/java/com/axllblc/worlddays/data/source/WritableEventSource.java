@@ -2,6 +2,7 @@ package com.axllblc.worlddays.data.source;
 
 import com.axllblc.worlddays.data.Event;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface WritableEventSource {
@@ -11,4 +12,16 @@ public interface WritableEventSource {
     void delete(Event event);
     void delete(String eventId);
     void deleteAll();
+
+    /**
+     * Applies a set of changes at once: deletes the events with given IDs, updates the given
+     * events, then inserts the new ones.
+     *
+     * @param idsToDelete IDs of the events to delete
+     * @param eventsToUpdate Events to update (see {@link #update(Event)})
+     * @param eventsToInsert Events to insert (see {@link #insert(Event)})
+     */
+    void applyChanges(Collection<String> idsToDelete,
+                      List<Event> eventsToUpdate,
+                      List<Event> eventsToInsert);
 }
@@ -0,0 +1,143 @@
+package com.axllblc.worlddays.data.source.http;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * Network interceptor which fails fast while a host is degraded (<i>circuit breaker</i>).
+ * <p>
+ * Each host has its own circuit:
+ * <ul>
+ *     <li><b>Closed</b>: requests are sent. After {@code failureThreshold} consecutive failures
+ *     (connection failures, 429 and 5xx responses), the circuit opens.</li>
+ *     <li><b>Open</b>: requests fail immediately with a {@link CircuitOpenException}, during
+ *     {@code openDuration}.</li>
+ *     <li><b>Half-open</b>: a single trial request is sent, others still fail immediately. The
+ *     circuit closes if it succeeds, and opens again otherwise.</li>
+ * </ul>
+ */
+public class CircuitBreakerInterceptor implements Interceptor {
+    static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    static final long DEFAULT_OPEN_DURATION_MILLIS = 30_000;
+
+    /**
+     * Failure of a request which has not been sent, because the circuit of its host is open.
+     */
+    public static class CircuitOpenException extends IOException {
+        CircuitOpenException(String host) {
+            super("Circuit open for " + host);
+        }
+    }
+
+    /**
+     * State of the circuit of a host. Guarded by the interceptor.
+     */
+    private static class Circuit {
+        int consecutiveFailures = 0;
+        /**
+         * End of the open state, or {@code 0} if the circuit is closed.
+         */
+        long openUntil = 0;
+        /**
+         * {@code true} while the trial request of the half-open state is in flight.
+         */
+        boolean trialInFlight = false;
+    }
+
+    private final int failureThreshold;
+    private final long openDurationMillis;
+    private final LongSupplier currentTimeMillis;
+    private final Map<String, Circuit> circuits = new HashMap<>();
+
+    public CircuitBreakerInterceptor() {
+        this(DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_DURATION_MILLIS, System::currentTimeMillis);
+    }
+
+    CircuitBreakerInterceptor(int failureThreshold, long openDurationMillis,
+                              LongSupplier currentTimeMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openDurationMillis = openDurationMillis;
+        this.currentTimeMillis = currentTimeMillis;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        String host = chain.request().url().host();
+        boolean trial = acquire(host);
+
+        Response response;
+        try {
+            response = chain.proceed(chain.request());
+        } catch (IOException e) {
+            if (!chain.call().isCanceled()) {
+                onResult(host, trial, false);
+            } else if (trial) {
+                releaseTrial(host);
+            }
+            throw e;
+        }
+
+        onResult(host, trial, !isFailure(response));
+        return response;
+    }
+
+    /**
+     * Checks that a request can be sent to {@code host}.
+     *
+     * @return {@code true} if the request is the trial request of the half-open state
+     * @throws CircuitOpenException If the circuit is open
+     */
+    private synchronized boolean acquire(String host) throws CircuitOpenException {
+        Circuit circuit = circuits.get(host);
+        if (circuit == null || circuit.openUntil == 0) return false;  // Closed
+
+        if (currentTimeMillis.getAsLong() < circuit.openUntil || circuit.trialInFlight)
+            throw new CircuitOpenException(host);
+
+        // Half-open
+        circuit.trialInFlight = true;
+        return true;
+    }
+
+    private synchronized void onResult(String host, boolean trial, boolean success) {
+        Circuit circuit = circuits.get(host);
+        if (circuit == null) {
+            if (success) return;
+            circuit = new Circuit();
+            circuits.put(host, circuit);
+        }
+        if (trial) circuit.trialInFlight = false;
+
+        if (success) {
+            circuit.consecutiveFailures = 0;
+            circuit.openUntil = 0;
+        } else {
+            circuit.consecutiveFailures++;
+            if (trial || circuit.consecutiveFailures >= failureThreshold) {
+                circuit.openUntil = currentTimeMillis.getAsLong() + openDurationMillis;
+            }
+        }
+    }
+
+    private synchronized void releaseTrial(String host) {
+        Circuit circuit = circuits.get(host);
+        if (circuit != null) circuit.trialInFlight = false;
+    }
+
+    /**
+     * Returns {@code true} if the state of the circuit of {@code host} is open (or half-open).
+     */
+    public synchronized boolean isOpen(String host) {
+        Circuit circuit = circuits.get(host);
+        return circuit != null && circuit.openUntil != 0;
+    }
+
+    private static boolean isFailure(Response response) {
+        return response.code() == 429 || response.code() >= 500;
+    }
+}
@@ -0,0 +1,100 @@
+package com.axllblc.worlddays.data.source.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * Network interceptor which limits the rate of requests sent to each host, with a token bucket.
+ * <p>
+ * The bucket of each host holds up to {@code capacity} tokens (allowing short bursts), and is
+ * refilled with {@code tokensPerSecond} tokens per second. Each request takes a token; when the
+ * bucket is empty, the request waits for the next token.
+ */
+public class RateLimitInterceptor implements Interceptor {
+    static final int DEFAULT_CAPACITY = 5;
+    static final double DEFAULT_TOKENS_PER_SECOND = 2;
+
+    /**
+     * Token bucket of a host. Guarded by the interceptor.
+     */
+    private static class Bucket {
+        double tokens;
+        long lastRefill;
+
+        Bucket(double tokens, long lastRefill) {
+            this.tokens = tokens;
+            this.lastRefill = lastRefill;
+        }
+    }
+
+    private final int capacity;
+    private final double tokensPerSecond;
+    private final Sleeper sleeper;
+    private final LongSupplier currentTimeMillis;
+    private final Map<String, Bucket> buckets = new HashMap<>();
+
+    public RateLimitInterceptor() {
+        this(DEFAULT_CAPACITY, DEFAULT_TOKENS_PER_SECOND,
+                Sleeper.THREAD, System::currentTimeMillis);
+    }
+
+    RateLimitInterceptor(int capacity, double tokensPerSecond,
+                         Sleeper sleeper, LongSupplier currentTimeMillis) {
+        this.capacity = capacity;
+        this.tokensPerSecond = tokensPerSecond;
+        this.sleeper = sleeper;
+        this.currentTimeMillis = currentTimeMillis;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        String host = chain.request().url().host();
+
+        long delay;
+        while ((delay = tryAcquire(host)) > 0) {
+            try {
+                sleeper.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for rate limit");
+            }
+            if (chain.call().isCanceled()) throw new IOException("Canceled");
+        }
+
+        return chain.proceed(chain.request());
+    }
+
+    /**
+     * Takes a token from the bucket of {@code host}, if there is one.
+     *
+     * @return {@code 0} if a token has been taken, otherwise the time until the next token, in
+     * milliseconds
+     */
+    synchronized long tryAcquire(String host) {
+        long now = currentTimeMillis.getAsLong();
+        Bucket bucket = buckets.get(host);
+        if (bucket == null) {
+            bucket = new Bucket(capacity, now);
+            buckets.put(host, bucket);
+        }
+
+        // Refill
+        bucket.tokens = Math.min(
+                capacity,
+                bucket.tokens + (now - bucket.lastRefill) * tokensPerSecond / 1000
+        );
+        bucket.lastRefill = now;
+
+        if (bucket.tokens >= 1) {
+            bucket.tokens -= 1;
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((1 - bucket.tokens) * 1000 / tokensPerSecond));
+    }
+}
@@ -0,0 +1,137 @@
+package com.axllblc.worlddays.data.source.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Date;
+import java.util.Random;
+import java.util.function.LongSupplier;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * Application interceptor which retries requests when the server is throttling or temporarily
+ * unavailable (429, 502 and 503 status codes, and 504 with a {@code Retry-After} header), or
+ * when the connection failed.
+ * <p>
+ * Retries are delayed with an exponential backoff and full jitter: before retry {@code n}, the
+ * delay is a random value between 0 and {@code min(maxDelay, baseDelay × 2^(n-1))}. A
+ * {@code Retry-After} header, if any, is honored instead; if it asks to wait longer than
+ * {@code maxDelay}, the response is returned without retrying.
+ * <p>
+ * Responses served by the HTTP cache, and failures caused by an open
+ * {@link CircuitBreakerInterceptor circuit}, are never retried. Neither are timeouts, nor 504
+ * responses without {@code Retry-After}: Wikidata Query Service reports queries which reached its
+ * time limit this way, and the same query would time out again, after as long; callers such as
+ * {@code WikidataEventSource.getAll()} fall back to cheaper queries instead.
+ */
+public class RetryInterceptor implements Interceptor {
+    static final int DEFAULT_MAX_ATTEMPTS = 3;
+    static final long DEFAULT_BASE_DELAY_MILLIS = 500;
+    static final long DEFAULT_MAX_DELAY_MILLIS = 10_000;
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final Random random;
+    private final Sleeper sleeper;
+    private final LongSupplier currentTimeMillis;
+
+    public RetryInterceptor() {
+        this(DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS,
+                new Random(), Sleeper.THREAD, System::currentTimeMillis);
+    }
+
+    RetryInterceptor(int maxAttempts, long baseDelayMillis, long maxDelayMillis,
+                     Random random, Sleeper sleeper, LongSupplier currentTimeMillis) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.random = random;
+        this.sleeper = sleeper;
+        this.currentTimeMillis = currentTimeMillis;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            Response response;
+            try {
+                response = chain.proceed(chain.request());
+            } catch (CircuitBreakerInterceptor.CircuitOpenException | InterruptedIOException e) {
+                // Circuit open, or timeout
+                throw e;
+            } catch (IOException e) {
+                if (attempt >= maxAttempts || chain.call().isCanceled()) throw e;
+                sleep(chain, backoffDelay(attempt));
+                continue;
+            }
+
+            if (attempt >= maxAttempts || !isRetryable(response)) return response;
+
+            long delay = retryAfterDelay(response);
+            if (delay < 0) delay = backoffDelay(attempt);
+            if (delay > maxDelayMillis) return response;  // Not worth waiting
+
+            response.close();
+            sleep(chain, delay);
+        }
+    }
+
+    /**
+     * Returns {@code true} if the response comes from the server, which is throttling or
+     * temporarily unavailable.
+     */
+    private static boolean isRetryable(Response response) {
+        if (response.networkResponse() == null) return false;  // From the cache
+
+        switch (response.code()) {
+            case 429:
+            case 502:
+            case 503:
+                return true;
+            case 504:
+                // Otherwise, a timeout of the query
+                return response.header("Retry-After") != null;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the delay before retry {@code attempt}, with full jitter.
+     */
+    long backoffDelay(int attempt) {
+        long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 30));
+        return (long) (random.nextDouble() * ceiling);
+    }
+
+    /**
+     * Returns the delay requested by the {@code Retry-After} header of {@code response}, in
+     * milliseconds, or {@code -1} if there is none (or it is invalid).
+     */
+    long retryAfterDelay(Response response) {
+        String retryAfter = response.header("Retry-After");
+        if (retryAfter == null) return -1;
+
+        try {
+            // Delay in seconds
+            return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            // HTTP date
+            Date date = response.headers().getDate("Retry-After");
+            if (date == null) return -1;
+            return Math.max(0, date.getTime() - currentTimeMillis.getAsLong());
+        }
+    }
+
+    private void sleep(Chain chain, long millis) throws IOException {
+        try {
+            sleeper.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+        if (chain.call().isCanceled()) throw new IOException("Canceled");
+    }
+}
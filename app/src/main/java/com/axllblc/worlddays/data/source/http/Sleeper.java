@@ -0,0 +1,10 @@
+package com.axllblc.worlddays.data.source.http;
+
+/**
+ * Pauses the current thread. Replaced in tests, so that they do not actually wait.
+ */
+interface Sleeper {
+    Sleeper THREAD = Thread::sleep;
+
+    void sleep(long millis) throws InterruptedException;
+}
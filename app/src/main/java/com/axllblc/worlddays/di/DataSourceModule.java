@@ -3,6 +3,7 @@ package com.axllblc.worlddays.di;
 import com.axllblc.worlddays.data.source.LocalDatabaseEventSource;
 import com.axllblc.worlddays.data.source.ReadWriteEventSource;
 import com.axllblc.worlddays.data.source.ReadableEventSource;
+import com.axllblc.worlddays.data.source.SnapshotEventSource;
 import com.axllblc.worlddays.data.source.WikidataEventSource;
 import com.axllblc.worlddays.data.source.WikipediaIntroSource;
 import com.axllblc.worlddays.data.source.WikipediaIntroSourceImpl;
@@ -30,4 +31,9 @@ public abstract class DataSourceModule {
     @Binds
     @Qualifiers.LocalDatabaseEventSource
     public abstract ReadWriteEventSource bindLocalDatabaseEventSource(LocalDatabaseEventSource impl);
+
+    @Singleton
+    @Binds
+    @Qualifiers.SnapshotEventSource
+    public abstract ReadableEventSource bindSnapshotEventSource(SnapshotEventSource impl);
 }
@@ -0,0 +1,92 @@
+package com.axllblc.worlddays.di;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import com.axllblc.worlddays.AppExecutors;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Singleton;
+
+import dagger.Module;
+import dagger.Provides;
+import dagger.hilt.InstallIn;
+import dagger.hilt.components.SingletonComponent;
+
+@Module
+@InstallIn(SingletonComponent.class)
+public class ExecutorModule {
+    /**
+     * Maximum number of threads performing network requests.
+     */
+    private static final int NETWORK_THREADS = 4;
+    /**
+     * Maximum number of threads performing disk I/O.
+     */
+    private static final int DISK_THREADS = 2;
+    /**
+     * Maximum number of prefetch tasks waiting to run. When the queue is full, the oldest task
+     * is dropped: only the latest prefetches are relevant.
+     */
+    private static final int PREFETCH_QUEUE_CAPACITY = 1;
+    /**
+     * Time after which idle threads are stopped.
+     */
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    @Provides
+    @Singleton
+    public static AppExecutors provideAppExecutors() {
+        Handler mainThreadHandler = new Handler(Looper.getMainLooper());
+
+        return new AppExecutors(
+                newPool("network", NETWORK_THREADS,
+                        Process.THREAD_PRIORITY_BACKGROUND, new LinkedBlockingQueue<>()),
+                newPool("disk", DISK_THREADS,
+                        Process.THREAD_PRIORITY_BACKGROUND, new LinkedBlockingQueue<>()),
+                newPrefetchPool(),
+                mainThreadHandler::post
+        );
+    }
+
+    /**
+     * Creates the pool for prefetching: a single thread with the lowest priority, and a bounded
+     * queue which drops the oldest tasks.
+     */
+    private static ThreadPoolExecutor newPrefetchPool() {
+        ThreadPoolExecutor pool = newPool("prefetch", 1,
+                Process.THREAD_PRIORITY_LOWEST,
+                new LinkedBlockingQueue<>(PREFETCH_QUEUE_CAPACITY));
+        pool.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardOldestPolicy());
+        return pool;
+    }
+
+    /**
+     * Creates a pool of at most {@code threads} threads with given priority, which are stopped
+     * when idle.
+     */
+    private static ThreadPoolExecutor newPool(String name, int threads, int priority,
+                                              BlockingQueue<Runnable> queue) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> new Thread(() -> {
+            Process.setThreadPriority(priority);
+            runnable.run();
+        }, name + "-" + count.incrementAndGet());
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                threads, threads,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                queue,
+                threadFactory
+        );
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+}
@@ -1,19 +1,114 @@
 package com.axllblc.worlddays.di;
 
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+
+import com.axllblc.worlddays.data.source.http.CircuitBreakerInterceptor;
+import com.axllblc.worlddays.data.source.http.RateLimitInterceptor;
+import com.axllblc.worlddays.data.source.http.RetryInterceptor;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
 import javax.inject.Singleton;
 
 import dagger.Module;
 import dagger.Provides;
 import dagger.hilt.InstallIn;
+import dagger.hilt.android.qualifiers.ApplicationContext;
 import dagger.hilt.components.SingletonComponent;
+import okhttp3.Cache;
+import okhttp3.CacheControl;
+import okhttp3.ConnectionPool;
+import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
+import okhttp3.Request;
 
 @Module
 @InstallIn(SingletonComponent.class)
 public class OkHttpModule {
+    /**
+     * Maximum size of the HTTP cache, on disk.
+     */
+    static final long CACHE_SIZE_BYTES = 20L * 1024 * 1024;
+    /**
+     * Idle connections kept alive: the app only talks to Wikidata Query Service and Wikipedia.
+     */
+    private static final int MAX_IDLE_CONNECTIONS = 4;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    private static final long CONNECT_TIMEOUT_SECONDS = 10;
+    /**
+     * Wikidata Query Service stops queries after 60 seconds: wait slightly longer.
+     */
+    private static final long READ_TIMEOUT_SECONDS = 65;
+
     @Provides
     @Singleton
-    public static OkHttpClient provideOkHttpClient() {
-        return new OkHttpClient();
+    public static OkHttpClient provideOkHttpClient(@ApplicationContext Context context) {
+        ConnectivityManager connectivityManager =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+
+        return newOkHttpClient(
+                new File(context.getCacheDir(), "http"),
+                () -> isOnline(connectivityManager)
+        );
+    }
+
+    /**
+     * Creates the HTTP client of the application.
+     * <ul>
+     *     <li>Responses are stored in an HTTP cache in {@code cacheDirectory}, of at most
+     *     {@link #CACHE_SIZE_BYTES}. Cached responses are used as long as they are fresh, then
+     *     revalidated with a conditional request ({@code If-None-Match} /
+     *     {@code If-Modified-Since}) if they have validators.</li>
+     *     <li>While {@code isOnline} returns {@code false}, requests are answered from the cache
+     *     only, even with stale responses. Requests which are not cached then fail with a
+     *     {@code 504 Unsatisfiable Request} response.</li>
+     *     <li>Requests sent to the network are retried with a backoff while the server is
+     *     throttling ({@link RetryInterceptor}), fail fast while a host is degraded
+     *     ({@link CircuitBreakerInterceptor}), and are rate-limited per host
+     *     ({@link RateLimitInterceptor}).</li>
+     * </ul>
+     */
+    static OkHttpClient newOkHttpClient(File cacheDirectory, BooleanSupplier isOnline) {
+        Interceptor offlineInterceptor = chain -> {
+            Request request = chain.request();
+            if (!isOnline.getAsBoolean()) {
+                request = request.newBuilder()
+                        .cacheControl(CacheControl.FORCE_CACHE)
+                        .build();
+            }
+            return chain.proceed(request);
+        };
+
+        return new OkHttpClient.Builder()
+                .cache(new Cache(cacheDirectory, CACHE_SIZE_BYTES))
+                .connectionPool(new ConnectionPool(
+                        MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES
+                ))
+                .connectTimeout(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .readTimeout(READ_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .addInterceptor(offlineInterceptor)
+                .addInterceptor(new RetryInterceptor())
+                .addNetworkInterceptor(new CircuitBreakerInterceptor())
+                .addNetworkInterceptor(new RateLimitInterceptor())
+                .build();
+    }
+
+    /**
+     * Returns {@code true} if the active network has Internet access.
+     */
+    private static boolean isOnline(ConnectivityManager connectivityManager) {
+        if (connectivityManager == null) return true;
+
+        Network network = connectivityManager.getActiveNetwork();
+        if (network == null) return false;
+
+        NetworkCapabilities capabilities = connectivityManager.getNetworkCapabilities(network);
+        return capabilities != null
+                && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET);
     }
 }
@@ -13,4 +13,8 @@ public class Qualifiers {
     @Qualifier
     @Retention(RetentionPolicy.RUNTIME)
     public @interface LocalDatabaseEventSource {}
+
+    @Qualifier
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface SnapshotEventSource {}
 }
@@ -1,7 +1,5 @@
 package com.axllblc.worlddays.ui.viewmodel;
 
-import android.os.Handler;
-import android.os.Looper;
 import android.util.Log;
 import android.util.Pair;
 
@@ -9,14 +7,13 @@ import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
 
+import com.axllblc.worlddays.AppExecutors;
 import com.axllblc.worlddays.data.Event;
 import com.axllblc.worlddays.data.Result;
 import com.axllblc.worlddays.data.repository.EventRepository;
 
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 
 import javax.inject.Inject;
@@ -27,15 +24,18 @@ import dagger.hilt.android.lifecycle.HiltViewModel;
 public class DetailsViewModel extends ViewModel {
     private static final String TAG = "DetailsViewModel";
     private final EventRepository eventRepository;
+    private final AppExecutors executors;
 
     private final MutableLiveData<DetailsUiState> uiState;
 
 
     @Inject
     public DetailsViewModel(
-            EventRepository eventRepository
+            EventRepository eventRepository,
+            AppExecutors executors
     ) {
         this.eventRepository = eventRepository;
+        this.executors = executors;
         this.uiState = new MutableLiveData<>(new DetailsUiState());
     }
 
@@ -55,9 +55,6 @@ public class DetailsViewModel extends ViewModel {
     }
 
     private void fetchEvent(String eventId, boolean refresh) {
-        ExecutorService executor = Executors.newSingleThreadExecutor();  // New thread
-        Handler handler = new Handler(Looper.getMainLooper());           // Main thread
-
         // Callback, to be executed in the main thread
         Consumer< Pair<Result<Optional<Event>>, Boolean> > callback = pair -> {
             if (pair.first.hasValue() && pair.first.get().isPresent()) {
@@ -73,16 +70,8 @@ public class DetailsViewModel extends ViewModel {
             }
         };
 
-        // Fetch events in the new thread
-        executor.execute(() -> {
-            Result<Optional<Event>> result;
-            try {
-                result = eventRepository.getEvent(eventId, true, refresh);
-            } catch (Exception e) {
-                result = Result.error(e);
-            }
-            Result<Optional<Event>> finalResult = result;
-
+        // Fetch events in a background thread
+        executors.network().execute(() -> {
             Boolean isFavorite = null;
             try {
                 isFavorite = eventRepository.isFavorite(eventId);
@@ -90,10 +79,40 @@ public class DetailsViewModel extends ViewModel {
                 Log.e(TAG, "Failed to check favorite status", e);
             }
             Boolean finalIsFavorite = isFavorite;
+            // Set in the main thread once the intro or the refreshed event is shown: the event
+            // returned before it, if posted later, must not replace it
+            boolean[] newerEventShown = {false};
+
+            Result<Optional<Event>> result;
+            try {
+                if (refresh) {
+                    // Show the event as soon as possible, then its intro
+                    result = eventRepository.getDetailedEvent(eventId, true, event ->
+                            executors.mainThread().execute(() -> {
+                                newerEventShown[0] = true;
+                                callback.accept(new Pair<>(
+                                        Result.success(Optional.of(event)), finalIsFavorite
+                                ));
+                            })
+                    );
+                } else {
+                    // Show the local event first, then the refreshed event if it has changed
+                    result = eventRepository.getEvent(eventId, true, event ->
+                            executors.mainThread().execute(() -> {
+                                newerEventShown[0] = true;
+                                callback.accept(new Pair<>(Result.success(event), finalIsFavorite));
+                            })
+                    );
+                }
+            } catch (Exception e) {
+                result = Result.error(e);
+            }
+            Result<Optional<Event>> finalResult = result;
 
-            handler.post(() -> callback.accept(
-                    new Pair<>(finalResult, finalIsFavorite)
-            ));
+            executors.mainThread().execute(() -> {
+                if (newerEventShown[0] && finalResult.isSuccess()) return;
+                callback.accept(new Pair<>(finalResult, finalIsFavorite));
+            });
         });
     }
 
@@ -102,9 +121,6 @@ public class DetailsViewModel extends ViewModel {
     }
 
     public void setFavorite(boolean favorite) {
-        ExecutorService executor = Executors.newSingleThreadExecutor();  // New thread
-        Handler handler = new Handler(Looper.getMainLooper());           // Main thread
-
         // Callback, to be executed in the main thread
         Consumer<Result<Boolean>> callback = result -> {
             if (result.isSuccess()) {
@@ -118,8 +134,8 @@ public class DetailsViewModel extends ViewModel {
             }
         };
 
-        // Set favorite in the new thread
-        executor.execute(() -> {
+        // Set favorite in a background thread
+        executors.disk().execute(() -> {
             Result<Boolean> result;
             try {
                 String eventId = Objects.requireNonNull(uiState.getValue()).getEvent().getId();
@@ -134,7 +150,7 @@ public class DetailsViewModel extends ViewModel {
             }
             Result<Boolean> finalResult = result;
 
-            handler.post(() -> callback.accept(finalResult));
+            executors.mainThread().execute(() -> callback.accept(finalResult));
         });
     }
 }
@@ -1,19 +1,15 @@
 package com.axllblc.worlddays.ui.viewmodel;
 
-import android.os.Handler;
-import android.os.Looper;
-
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
 
+import com.axllblc.worlddays.AppExecutors;
 import com.axllblc.worlddays.data.Event;
 import com.axllblc.worlddays.data.Result;
 import com.axllblc.worlddays.data.repository.EventRepository;
 
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 
 import javax.inject.Inject;
@@ -23,15 +19,18 @@ import dagger.hilt.android.lifecycle.HiltViewModel;
 @HiltViewModel
 public class FavoritesViewModel extends ViewModel {
     private final EventRepository eventRepository;
+    private final AppExecutors executors;
 
     private final MutableLiveData<FavoritesUiState> uiState;
 
     @Inject
     public FavoritesViewModel(
-            EventRepository eventRepository
+            EventRepository eventRepository,
+            AppExecutors executors
     ) {
         super();
         this.eventRepository = eventRepository;
+        this.executors = executors;
 
         this.uiState = new MutableLiveData<>(new FavoritesUiState());
     }
@@ -41,9 +40,6 @@ public class FavoritesViewModel extends ViewModel {
     }
 
     public void fetch() {
-        ExecutorService executor = Executors.newSingleThreadExecutor();  // New thread
-        Handler handler = new Handler(Looper.getMainLooper());           // Main thread
-
         // Callback, to be executed in the main thread
         Consumer<Result<List<Event>>> callback = result -> {
             if (result.hasValue()) {
@@ -58,8 +54,8 @@ public class FavoritesViewModel extends ViewModel {
             }
         };
 
-        // Fetch events in the new thread
-        executor.execute(() -> {
+        // Fetch events in a background thread
+        executors.disk().execute(() -> {
             Result<List<Event>> result;
             try {
                 result = Result.success(eventRepository.getFavorites());
@@ -67,7 +63,7 @@ public class FavoritesViewModel extends ViewModel {
                 result = Result.error(e);
             }
             Result<List<Event>> finalResult = result;
-            handler.post(() -> callback.accept(finalResult));
+            executors.mainThread().execute(() -> callback.accept(finalResult));
         });
     }
 
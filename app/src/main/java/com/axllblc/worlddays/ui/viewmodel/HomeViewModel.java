@@ -1,25 +1,21 @@
 package com.axllblc.worlddays.ui.viewmodel;
 
-import android.os.Handler;
-import android.os.Looper;
-
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
 
+import com.axllblc.worlddays.AppExecutors;
+import com.axllblc.worlddays.data.CancellationToken;
 import com.axllblc.worlddays.data.Event;
 import com.axllblc.worlddays.data.Result;
 import com.axllblc.worlddays.data.repository.EventRepository;
 
 import java.time.LocalDate;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
 
 
 import javax.inject.Inject;
@@ -29,16 +25,32 @@ import dagger.hilt.android.lifecycle.HiltViewModel;
 @HiltViewModel
 public class HomeViewModel extends ViewModel {
     private final EventRepository eventRepository;
+    private final AppExecutors executors;
 
     private final MutableLiveData<HomeUiState> uiState;
 
+    /**
+     * Generation of the latest fetch. Results of previous generations are dropped.
+     * Only accessed from the main thread.
+     */
+    private int fetchGeneration = 0;
+    /**
+     * Token used to cancel the latest fetch.
+     */
+    private CancellationToken fetchCancellationToken = null;
+    /**
+     * Background task of the latest fetch.
+     */
+    private Future<?> fetchTask = null;
 
     @Inject
     public HomeViewModel(
-            EventRepository eventRepository
+            EventRepository eventRepository,
+            AppExecutors executors
     ) {
         super();
         this.eventRepository = eventRepository;
+        this.executors = executors;
 
         uiState = new MutableLiveData<>(new HomeUiState(
                 LocalDate.now(), Collections.emptyList()
@@ -57,18 +69,26 @@ public class HomeViewModel extends ViewModel {
         fetchEvents(false);
     }
 
+    /**
+     * Fetches the events of the selected month. The previous fetch, if still running, is
+     * cancelled: its results are never shown.
+     */
     private void fetchEvents(boolean refresh) {
         int month = Objects.requireNonNull(uiState.getValue()).getDate().getMonth().getValue();
 
+        cancelFetch();
+        int generation = ++fetchGeneration;
+        CancellationToken cancellationToken = new CancellationToken();
+        fetchCancellationToken = cancellationToken;
+
         uiState.setValue(
                 uiState.getValue().withLoading(true)
         );
 
-        ExecutorService executor = Executors.newSingleThreadExecutor();  // New thread
-        Handler handler = new Handler(Looper.getMainLooper());           // Main thread
-
         // Callback, to be executed in the main thread
         Consumer<Result<List<Event>>> callback = result -> {
+            if (generation != fetchGeneration) return;  // Superseded by a newer fetch
+
             uiState.setValue(
                     uiState.getValue().withEvents(result.orElse(Collections.emptyList()))
                             .withLoading(false)
@@ -80,26 +100,82 @@ public class HomeViewModel extends ViewModel {
             }
         };
 
-        // Fetch events in the new thread
-        executor.execute(() -> {
+        // Fetch events in a background thread
+        fetchTask = executors.network().submit(() -> cancellationToken.runWith(() -> {
+            // Set in the main thread once refreshed events are shown: the local events, if
+            // posted later, must not replace them
+            boolean[] revalidatedShown = {false};
+
             Result<List<Event>> result;
             try {
-                Result<List<Event>> eventsResult = eventRepository.getEventsByMonth(month, refresh);
-                // Sort events
-                List<Event> sortedEvents = eventsResult.orThrow().stream()
-                        .sorted(Comparator.comparing(Event::getMonthDay))
-                        .collect(Collectors.toList());
-                result = eventsResult.withValue(sortedEvents);
+                // Events are already sorted by date
+                if (refresh) {
+                    result = eventRepository.getEventsByMonth(month, true);
+                } else {
+                    // Show local events first, then refreshed events if they have changed
+                    result = eventRepository.getEventsByMonth(month, events ->
+                            executors.mainThread().execute(() -> {
+                                revalidatedShown[0] = true;
+                                callback.accept(Result.success(events));
+                            })
+                    );
+                }
             } catch (Throwable e) {
                 result = Result.error(e);
             }
+            if (cancellationToken.isCancelled()) return;
+
             Result<List<Event>> finalResult = result;
-            handler.post(() -> callback.accept(finalResult));
-        });
+            executors.mainThread().execute(() -> {
+                if (revalidatedShown[0] && finalResult.isSuccess()) return;
+                callback.accept(finalResult);
+            });
+
+            if (result.isSuccess()) prefetchAdjacentMonths(month, cancellationToken);
+        }));
+    }
+
+    /**
+     * Loads the events of the months before and after {@code month} into the local source, so
+     * that they are shown without waiting for the network when the user navigates to them.
+     * <p>
+     * Prefetching uses {@link AppExecutors#prefetch()} and stops as soon as foreground requests
+     * saturate {@link AppExecutors#network()}, or when {@code cancellationToken} is cancelled (the user navigated elsewhere).
+     * Months which are already fresh are not fetched again.
+     */
+    private void prefetchAdjacentMonths(int month, CancellationToken cancellationToken) {
+        int[] adjacentMonths = {
+                month % 12 + 1,         // Next month
+                (month + 10) % 12 + 1,  // Previous month
+        };
+
+        executors.prefetch().execute(() -> cancellationToken.runWith(() -> {
+            for (int adjacentMonth : adjacentMonths) {
+                if (cancellationToken.isCancelled() || executors.isNetworkSaturated()) return;
+                try {
+                    eventRepository.getEventsByMonth(adjacentMonth, false);
+                } catch (Exception ignored) {
+                    // Best effort: the month is fetched again when it is shown
+                }
+            }
+        }));
+    }
+
+    /**
+     * Cancels the latest fetch (its network requests and its background task), if any.
+     */
+    private void cancelFetch() {
+        if (fetchCancellationToken != null) fetchCancellationToken.cancel();
+        if (fetchTask != null) fetchTask.cancel(true);
     }
 
     public void clearException() {
         uiState.setValue(uiState.getValue().withException(null));
     }
 
+    @Override
+    protected void onCleared() {
+        cancelFetch();
+        super.onCleared();
+    }
 }
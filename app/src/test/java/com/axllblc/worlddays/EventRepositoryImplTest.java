@@ -0,0 +1,753 @@
+package com.axllblc.worlddays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.axllblc.worlddays.data.Event;
+import com.axllblc.worlddays.data.Result;
+import com.axllblc.worlddays.data.SyncMetadata;
+import com.axllblc.worlddays.data.repository.EventCache;
+import com.axllblc.worlddays.data.repository.EventRepositoryImpl;
+import com.axllblc.worlddays.data.repository.RefreshPolicy;
+import com.axllblc.worlddays.data.source.DeltaEventSource;
+import com.axllblc.worlddays.data.source.ReadableEventSource;
+import com.axllblc.worlddays.data.source.WikipediaIntroSource;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.MonthDay;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+public class EventRepositoryImplTest {
+    static EventRepositoryImpl newRepository(FakeEventSource remote,
+                                             FakeEventSource local,
+                                             EventCache cache) {
+        return newRepository(remote, local, cache, new RefreshPolicy());
+    }
+
+    static EventRepositoryImpl newRepository(FakeEventSource remote,
+                                             FakeEventSource local,
+                                             EventCache cache,
+                                             RefreshPolicy refreshPolicy) {
+        return new EventRepositoryImpl(
+                remote, local, new FakeEventSource(), NO_INTROS, cache, newExecutors(),
+                refreshPolicy
+        );
+    }
+
+    static EventRepositoryImpl newRepository(FakeEventSource remote,
+                                             FakeEventSource local,
+                                             ReadableEventSource snapshot) {
+        return new EventRepositoryImpl(
+                remote, local, snapshot, NO_INTROS, new EventCache(), newExecutors(),
+                new RefreshPolicy()
+        );
+    }
+
+    static EventRepositoryImpl newRepository(FakeEventSource remote,
+                                             FakeEventSource local,
+                                             WikipediaIntroSource wikipediaIntroSource) {
+        return new EventRepositoryImpl(
+                remote, local, new FakeEventSource(), wikipediaIntroSource, new EventCache(),
+                newExecutors(), new RefreshPolicy()
+        );
+    }
+
+    /**
+     * {@link WikipediaIntroSource} without any intro.
+     */
+    static final WikipediaIntroSource NO_INTROS = new WikipediaIntroSource() {
+        @Override
+        public Result<String> getArticleIntro(String articleURL) {
+            return Result.error(new IllegalArgumentException(articleURL));
+        }
+
+        @Override
+        public Result<Map<String, String>> getArticleIntros(Collection<String> articleURLs) {
+            return Result.success(Collections.emptyMap());
+        }
+    };
+
+    static RefreshPolicy newRefreshPolicy(Instant now) {
+        return new RefreshPolicy(
+                Duration.ofDays(1), Duration.ofMinutes(1), Clock.fixed(now, ZoneOffset.UTC)
+        );
+    }
+
+    static AppExecutors newExecutors() {
+        return new AppExecutors(newPool(), newPool(), newPool(), Runnable::run);
+    }
+
+    static ThreadPoolExecutor newPool() {
+        return new ThreadPoolExecutor(
+                1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>()
+        );
+    }
+
+    static List<Event> syntheticEvents(int from, int to, String titlePrefix) {
+        List<Event> events = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            events.add(new Event("Q" + i, titlePrefix + i, MonthDay.of(i % 12 + 1, i % 28 + 1)));
+        }
+        return events;
+    }
+
+    @Test
+    public void getAll_refresh_mergesRemoteEventsIntoLocalSource() {
+        List<Event> localEvents = syntheticEvents(0, 10, "Event ");
+        List<Event> remoteEvents = syntheticEvents(5, 15, "Event ");
+        remoteEvents.set(0, remoteEvents.get(0).withTitle("Renamed event"));
+
+        FakeEventSource local = new FakeEventSource(localEvents);
+        local.star("Q6");
+        FakeEventSource remote = new FakeEventSource(remoteEvents);
+        EventRepositoryImpl repository = newRepository(remote, local, new EventCache());
+
+        Result<List<Event>> result = repository.getAll(true);
+
+        assertTrue(result.isSuccess());
+        assertEquals(new HashSet<>(remoteEvents), new HashSet<>(local.getAll()));
+        assertTrue(local.isFavorite("Q6"));
+    }
+
+    @Test(timeout = 2000)
+    public void getAll_refresh_merges50kEventsInLinearTime() {
+        final int count = 50_000;
+
+        FakeEventSource local = new FakeEventSource(syntheticEvents(0, count, "Event "));
+        List<Event> remoteEvents = syntheticEvents(count / 2, count + count / 2, "Updated event ");
+        FakeEventSource remote = new FakeEventSource(remoteEvents);
+        EventRepositoryImpl repository = newRepository(remote, local, new EventCache());
+
+        Result<List<Event>> result = repository.getAll(true);
+
+        assertTrue(result.isSuccess());
+        assertEquals(count, local.getAll().size());
+        assertEquals(new HashSet<>(remoteEvents), new HashSet<>(local.getAll()));
+    }
+
+    /**
+     * Local source whose name search, like the full-text search of the database, matches
+     * "fete" with "Fête de la musique", unlike the remote source.
+     */
+    static FakeEventSource newLocalSourceIgnoringDiacritics(List<Event> events) {
+        return new FakeEventSource(events) {
+            @Override
+            public synchronized List<Event> getEventsByName(String str) {
+                return this.events.values().stream()
+                        .filter(event -> event.getTitle().toLowerCase()
+                                .replace("ê", "e")
+                                .contains(str.toLowerCase()))
+                        .collect(Collectors.toList());
+            }
+        };
+    }
+
+    @Test
+    public void getEventsByName_refresh_onlyUpsertsEvents() {
+        Event fete = new Event("Q1", "Fête de la musique", MonthDay.of(6, 21));
+        Event feteRenamed = new Event("Q2", "Fete des voisins", MonthDay.of(5, 26));
+        Event feteStored = new Event("Q3", "Old title", MonthDay.of(1, 3));
+        FakeEventSource local = newLocalSourceIgnoringDiacritics(Arrays.asList(fete, feteStored));
+        local.star("Q1");
+        FakeEventSource remote = new FakeEventSource(
+                Arrays.asList(fete, feteRenamed, feteStored.withTitle("Fete du Q3"))
+        );
+        EventRepositoryImpl repository = newRepository(remote, local, new EventCache());
+
+        Result<List<Event>> result = repository.getEventsByName("fete", true);
+
+        assertTrue(result.isSuccess());
+        // Matched by the local search only: kept, with its favorite status
+        assertTrue(local.getEvent("Q1", false).isPresent());
+        assertTrue(local.isFavorite("Q1"));
+        // Not matched by the local search, but already stored: updated
+        assertEquals("Fete du Q3", local.getEvent("Q3", false).get().getTitle());
+        assertTrue(local.getEvent("Q2", false).isPresent());
+    }
+
+    @Test
+    public void getEventsByNamePaged_refresh_onlyUpsertsEvents() {
+        Event fete = new Event("Q1", "Fête de la musique", MonthDay.of(6, 21));
+        Event feteStored = new Event("Q3", "Old title", MonthDay.of(1, 3));
+        FakeEventSource local = newLocalSourceIgnoringDiacritics(Arrays.asList(fete, feteStored));
+        local.star("Q1");
+        FakeEventSource remote = new FakeEventSource(
+                Collections.singletonList(feteStored.withTitle("Fete du Q3"))
+        );
+        EventRepositoryImpl repository = newRepository(remote, local, new EventCache());
+
+        Result<List<Event>> result = repository.getEventsByName("fete", true, events -> {});
+
+        assertTrue(result.isSuccess());
+        assertTrue(local.isFavorite("Q1"));
+        assertEquals("Fete du Q3", local.getEvent("Q3", false).get().getTitle());
+    }
+
+    @Test
+    public void getAllPaged_storesAndPublishesEachPage() {
+        int count = EventRepositoryImpl.PAGE_SIZE * 2 + 1;
+        FakeEventSource local = new FakeEventSource(syntheticEvents(count, count + 10, "Event "));
+        List<Event> remoteEvents = syntheticEvents(0, count, "Event ");
+        FakeEventSource remote = new FakeEventSource(remoteEvents);
+        EventRepositoryImpl repository = newRepository(remote, local, new EventCache());
+
+        List<Integer> publishedSizes = new ArrayList<>();
+        List<Integer> storedSizes = new ArrayList<>();
+        Result<List<Event>> result = repository.getAll(true, events -> {
+            publishedSizes.add(events.size());
+            storedSizes.add(local.getAll().size());
+        });
+
+        assertTrue(result.isSuccess());
+        assertEquals(remoteEvents, result.get());
+        int pageSize = EventRepositoryImpl.PAGE_SIZE;
+        assertEquals(Arrays.asList(pageSize, pageSize * 2, count), publishedSizes);
+        // Each page is stored before being published; stale events are removed at the end
+        assertEquals(Arrays.asList(pageSize + 10, pageSize * 2 + 10, count + 10), storedSizes);
+        assertEquals(new HashSet<>(remoteEvents), new HashSet<>(local.getAll()));
+    }
+
+    @Test
+    public void getAllPaged_failureAfterFirstPage_keepsStoredPage() {
+        List<Event> remoteEvents = syntheticEvents(0, EventRepositoryImpl.PAGE_SIZE, "Event ");
+        FakeEventSource local = new FakeEventSource(syntheticEvents(1000, 1010, "Event "));
+        FakeEventSource remote = new FakeEventSource(remoteEvents) {
+            @Override
+            public void getAllPaged(int pageSize, Consumer<List<Event>> onPage)
+                    throws Exception {
+                onPage.accept(remoteEvents);
+                throw new IOException("Connection reset");
+            }
+        };
+        EventRepositoryImpl repository = newRepository(remote, local, new EventCache());
+
+        Result<List<Event>> result = repository.getAll(true, events -> {});
+
+        assertFalse(result.isSuccess());
+        // Stale events are kept, since the list is incomplete
+        assertEquals(remoteEvents.size() + 10, result.get().size());
+        assertEquals(
+                SyncMetadata.Outcome.ERROR,
+                local.getSyncMetadata(SyncMetadata.all()).get().getOutcome()
+        );
+    }
+
+    @Test
+    public void getEventsByMonth_secondCall_isServedFromCache() {
+        FakeEventSource local = new FakeEventSource(syntheticEvents(0, 24, "Event "));
+        local.putSyncMetadata(new SyncMetadata(
+                SyncMetadata.month(1),
+                System.currentTimeMillis(),
+                SyncMetadata.Outcome.SUCCESS,
+                null,
+                null,
+                null,
+                null
+        ));
+        FakeEventSource remote = new FakeEventSource();
+        EventCache cache = new EventCache();
+        EventRepositoryImpl repository = newRepository(remote, local, cache);
+
+        List<Event> firstResult = repository.getEventsByMonth(1, false).get();
+        local.deleteAll();  // Not visible through the cache
+        List<Event> secondResult = repository.getEventsByMonth(1, false).get();
+
+        assertEquals(2, firstResult.size());
+        assertEquals(firstResult, secondResult);
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void getEventsByMonth_freshEmptyResult_isNotFetchedAgainUntilItExpires() {
+        Instant now = Instant.parse("2024-03-20T00:00:00Z");
+        FakeEventSource local = new FakeEventSource();
+        FakeEventSource remote = new FakeEventSource();
+
+        EventRepositoryImpl repository = newRepository(
+                remote, local, new EventCache(), newRefreshPolicy(now)
+        );
+        assertTrue(repository.getEventsByMonth(1, false).get().isEmpty());
+
+        remote.insertAll(syntheticEvents(0, 1, "Event "));
+
+        // Fresh: the empty result is served by the local source
+        repository = newRepository(
+                remote, local, new EventCache(), newRefreshPolicy(now.plus(Duration.ofHours(1)))
+        );
+        assertTrue(repository.getEventsByMonth(1, false).get().isEmpty());
+
+        // Expired: the month is fetched again
+        repository = newRepository(
+                remote, local, new EventCache(), newRefreshPolicy(now.plus(Duration.ofDays(2)))
+        );
+        assertEquals(1, repository.getEventsByMonth(1, false).get().size());
+    }
+
+    @Test
+    public void getEvent_freshFetchWithoutLocalEvent_returnsEmptyOptional() {
+        Instant now = Instant.parse("2024-03-20T00:00:00Z");
+        FakeEventSource local = new FakeEventSource(syntheticEvents(1, 2, "Event "));
+        FakeEventSource remote = new FakeEventSource(syntheticEvents(1, 2, "Event "));
+
+        // Q0 is not found by the remote source, then Q1 is deleted by a month fetch
+        EventRepositoryImpl repository = newRepository(
+                remote, local, new EventCache(), newRefreshPolicy(now)
+        );
+        assertEquals(Optional.empty(), repository.getEvent("Q0", false, true).get());
+        assertTrue(repository.getEvent("Q1", false, true).get().isPresent());
+        remote.deleteAll();
+        assertTrue(repository.getEventsByMonth(2, true).get().isEmpty());
+        remote.insertAll(syntheticEvents(0, 2, "Event "));
+
+        // Fresh: the events are not fetched again
+        repository = newRepository(
+                remote, local, new EventCache(), newRefreshPolicy(now.plus(Duration.ofHours(1)))
+        );
+        Result<Optional<Event>> result = repository.getEvent("Q0", false, false);
+        assertTrue(result.isSuccess());
+        assertEquals(Optional.empty(), result.get());
+        result = repository.getEvent("Q1", false, false);
+        assertTrue(result.isSuccess());
+        assertEquals(Optional.empty(), result.get());
+
+        // Expired: the events are fetched again
+        repository = newRepository(
+                remote, local, new EventCache(), newRefreshPolicy(now.plus(Duration.ofDays(2)))
+        );
+        assertTrue(repository.getEvent("Q0", false, false).get().isPresent());
+        assertTrue(repository.getEvent("Q1", false, false).get().isPresent());
+    }
+
+    @Test
+    public void getEventsByMonth_failedFetch_isRecorded() {
+        Instant now = Instant.parse("2024-03-20T00:00:00Z");
+        FakeEventSource local = new FakeEventSource();
+        FakeEventSource remote = new FakeEventSource() {
+            @Override
+            public synchronized List<Event> getEventsByMonth(int month) {
+                throw new IllegalStateException("Offline");
+            }
+        };
+
+        EventRepositoryImpl repository = newRepository(
+                remote, local, new EventCache(), newRefreshPolicy(now)
+        );
+        Result<List<Event>> result = repository.getEventsByMonth(1, false);
+
+        assertFalse(result.isSuccess());
+        SyncMetadata syncMetadata = local.getSyncMetadata(SyncMetadata.month(1)).get();
+        assertEquals(SyncMetadata.Outcome.ERROR, syncMetadata.getOutcome());
+        assertEquals(now.toEpochMilli(), syncMetadata.getLastFetched());
+    }
+
+    @Test
+    public void syncCatalogue_servesMonthsFromLocalSourceUntilNextSync() {
+        FakeEventSource local = new FakeEventSource();
+        FakeEventSource remote = new FakeEventSource(syntheticEvents(0, 24, "Event ")) {
+            @Override
+            public synchronized List<Event> getEventsByMonth(int month) {
+                throw new IllegalStateException("Month queries should not be used");
+            }
+        };
+        EventRepositoryImpl repository = newRepository(remote, local, new EventCache());
+
+        assertEquals(Long.valueOf(1), repository.syncCatalogue(false).get());
+        assertEquals(24, local.getAll().size());
+
+        Result<List<Event>> result = repository.getEventsByMonth(1, false);
+        assertTrue(result.isSuccess());
+        assertEquals(2, result.get().size());
+
+        // Fresh catalogue: not fetched again, unless forced
+        assertEquals(Long.valueOf(1), repository.syncCatalogue(false).get());
+        assertEquals(Long.valueOf(2), repository.syncCatalogue(true).get());
+    }
+
+    @Test
+    public void syncCatalogue_failure_keepsPreviousVersion() {
+        FakeEventSource local = new FakeEventSource();
+        boolean[] offline = {false};
+        FakeEventSource remote = new FakeEventSource(syntheticEvents(0, 24, "Event ")) {
+            @Override
+            public synchronized List<Event> getAll() {
+                if (offline[0]) throw new IllegalStateException("Offline");
+                return super.getAll();
+            }
+        };
+        EventRepositoryImpl repository = newRepository(remote, local, new EventCache());
+        repository.syncCatalogue(false);
+
+        offline[0] = true;
+        Result<Long> result = repository.syncCatalogue(true);
+
+        assertFalse(result.isSuccess());
+        assertEquals(Long.valueOf(1), result.get());
+        SyncMetadata syncMetadata = local.getSyncMetadata(SyncMetadata.catalogue()).get();
+        assertEquals(Long.valueOf(1), syncMetadata.getVersion());
+    }
+
+    /**
+     * {@link FakeEventSource} which records the modification time of its events.
+     */
+    static class FakeDeltaEventSource extends FakeEventSource implements DeltaEventSource {
+        final Map<String, Long> modificationTimes = new HashMap<>();
+        final List<Instant> modifiedSinceCalls = new ArrayList<>();
+        int getAllCalls = 0;
+
+        FakeDeltaEventSource(List<Event> events, Instant modificationTime) {
+            super(events);
+            for (Event event : events) {
+                modificationTimes.put(event.getId(), modificationTime.toEpochMilli());
+            }
+        }
+
+        synchronized void modify(Event event, Instant modificationTime) {
+            update(event);
+            modificationTimes.put(event.getId(), modificationTime.toEpochMilli());
+        }
+
+        @Override
+        public synchronized List<Event> getAll() {
+            getAllCalls++;
+            return super.getAll();
+        }
+
+        @Override
+        public synchronized ModifiedEvents getEventsModifiedSince(Instant since) {
+            modifiedSinceCalls.add(since);
+            List<Event> modifiedEvents = new ArrayList<>();
+            Long latestModification = null;
+            for (Event event : events.values()) {
+                long modificationTime = modificationTimes.get(event.getId());
+                if (modificationTime <= since.toEpochMilli()) continue;
+
+                modifiedEvents.add(event);
+                latestModification = latestModification == null
+                        ? modificationTime
+                        : Math.max(latestModification, modificationTime);
+            }
+            return new ModifiedEvents(modifiedEvents, latestModification);
+        }
+
+        @Override
+        public synchronized Set<String> getAllIds() {
+            return new HashSet<>(events.keySet());
+        }
+    }
+
+    @Test
+    public void syncCatalogue_afterFirstSync_appliesDelta() {
+        Instant firstSync = Instant.parse("2024-01-01T00:00:00Z");
+        Instant secondSync = firstSync.plus(Duration.ofDays(7));
+        FakeEventSource local = new FakeEventSource();
+        FakeDeltaEventSource remote = new FakeDeltaEventSource(
+                syntheticEvents(0, 10, "Event "), firstSync.minus(Duration.ofDays(30))
+        );
+        newRepository(remote, local, new EventCache(), newRefreshPolicy(firstSync))
+                .syncCatalogue(false);
+
+        Instant renaming = firstSync.plus(Duration.ofHours(1));
+        remote.modify(new Event("Q1", "Renamed event", MonthDay.of(2, 2)), renaming);
+        remote.delete("Q2");
+        // Not modified since the first sync (for instance, its date item has been edited)
+        remote.modify(new Event("Q20", "New event", MonthDay.of(1, 20)),
+                firstSync.minus(Duration.ofDays(2)));
+
+        Result<Long> result = newRepository(
+                remote, local, new EventCache(), newRefreshPolicy(secondSync)
+        ).syncCatalogue(false);
+
+        assertTrue(result.isSuccess());
+        assertEquals(Long.valueOf(2), result.get());
+        assertEquals(1, remote.getAllCalls);
+        assertEquals(
+                Collections.singletonList(firstSync.minus(EventRepositoryImpl.DELTA_OVERLAP)),
+                remote.modifiedSinceCalls
+        );
+        assertEquals(new HashSet<>(remote.events.values()), new HashSet<>(local.getAll()));
+
+        SyncMetadata syncMetadata = local.getSyncMetadata(SyncMetadata.catalogue()).get();
+        assertEquals(Long.valueOf(renaming.toEpochMilli()), syncMetadata.getHighWaterMark());
+        assertEquals(secondSync.toEpochMilli(), syncMetadata.getLastFetched());
+    }
+
+    @Test
+    public void syncCatalogue_deltaWithoutChanges_keepsVersion() {
+        Instant firstSync = Instant.parse("2024-01-01T00:00:00Z");
+        FakeEventSource local = new FakeEventSource();
+        FakeDeltaEventSource remote = new FakeDeltaEventSource(
+                syntheticEvents(0, 10, "Event "), firstSync.minus(Duration.ofDays(30))
+        );
+        newRepository(remote, local, new EventCache(), newRefreshPolicy(firstSync))
+                .syncCatalogue(false);
+
+        Instant secondSync = firstSync.plus(Duration.ofDays(7));
+        Result<Long> result = newRepository(
+                remote, local, new EventCache(), newRefreshPolicy(secondSync)
+        ).syncCatalogue(false);
+
+        assertEquals(Long.valueOf(1), result.get());
+        assertEquals(1, remote.getAllCalls);
+        assertEquals(
+                Long.valueOf(firstSync.toEpochMilli()),
+                local.getSyncMetadata(SyncMetadata.catalogue()).get().getHighWaterMark()
+        );
+    }
+
+    @Test
+    public void syncCatalogue_fullSyncIntervalElapsed_fetchesWholeCatalogue() {
+        Instant firstSync = Instant.parse("2024-01-01T00:00:00Z");
+        FakeEventSource local = new FakeEventSource();
+        FakeDeltaEventSource remote = new FakeDeltaEventSource(
+                syntheticEvents(0, 10, "Event "), firstSync.minus(Duration.ofDays(30))
+        );
+        newRepository(remote, local, new EventCache(), newRefreshPolicy(firstSync))
+                .syncCatalogue(false);
+        newRepository(remote, local, new EventCache(),
+                newRefreshPolicy(firstSync.plus(Duration.ofDays(7)))).syncCatalogue(false);
+
+        // Not reported as modified (for instance, the label of its date item has been edited)
+        remote.modify(new Event("Q1", "Event 1", MonthDay.of(3, 3)),
+                firstSync.minus(Duration.ofDays(30)));
+        Instant fullSync = firstSync.plus(EventRepositoryImpl.FULL_SYNC_INTERVAL);
+        Result<Long> result = newRepository(
+                remote, local, new EventCache(), newRefreshPolicy(fullSync)
+        ).syncCatalogue(false);
+
+        assertEquals(Long.valueOf(2), result.get());
+        assertEquals(2, remote.getAllCalls);
+        assertEquals(new HashSet<>(remote.events.values()), new HashSet<>(local.getAll()));
+        assertEquals(
+                Long.valueOf(fullSync.toEpochMilli()),
+                local.getSyncMetadata(SyncMetadata.catalogue()).get().getLastFullSync()
+        );
+    }
+
+    @Test
+    public void syncCatalogue_languageChanged_fetchesWholeCatalogue() {
+        Locale defaultLocale = Locale.getDefault();
+        try {
+            Instant firstSync = Instant.parse("2024-01-01T00:00:00Z");
+            FakeEventSource local = new FakeEventSource();
+            FakeDeltaEventSource remote = new FakeDeltaEventSource(
+                    syntheticEvents(0, 10, "Event "), firstSync.minus(Duration.ofDays(30))
+            );
+            Locale.setDefault(Locale.ENGLISH);
+            newRepository(remote, local, new EventCache(), newRefreshPolicy(firstSync))
+                    .syncCatalogue(false);
+
+            Locale.setDefault(Locale.FRENCH);
+            Result<Long> result = newRepository(remote, local, new EventCache(),
+                    newRefreshPolicy(firstSync.plus(Duration.ofHours(1)))).syncCatalogue(false);
+
+            assertTrue(result.isSuccess());
+            assertEquals(2, remote.getAllCalls);
+            assertTrue(remote.modifiedSinceCalls.isEmpty());
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    @Test
+    public void getEvents_fetchesMissingEventsInOneBatch() {
+        FakeEventSource local = new FakeEventSource(syntheticEvents(0, 5, "Event "));
+        List<List<String>> batches = new ArrayList<>();
+        FakeEventSource remote = new FakeEventSource(syntheticEvents(0, 10, "Event ")) {
+            @Override
+            public synchronized List<Event> getEvents(Collection<String> ids,
+                                                      boolean withDetails) {
+                batches.add(new ArrayList<>(ids));
+                return super.getEvents(ids, withDetails);
+            }
+        };
+        EventRepositoryImpl repository = newRepository(remote, local, new EventCache());
+
+        Result<List<Event>> result = repository.getEvents(
+                Arrays.asList("Q8", "Q1", "Q6", "Q42", "Q1"), false, false
+        );
+
+        assertTrue(result.isSuccess());
+        assertEquals(
+                Arrays.asList("Q8", "Q1", "Q6"),
+                result.get().stream().map(Event::getId).collect(Collectors.toList())
+        );
+        assertEquals(Collections.singletonList(Arrays.asList("Q8", "Q6", "Q42")), batches);
+        assertEquals(7, local.getAll().size());
+    }
+
+    @Test
+    public void getDetailedEvent_returnsEventBeforeIntro() throws InterruptedException {
+        Event event = new Event("Q1", "Event 1", MonthDay.of(1, 1),
+                "https://en.wikipedia.org/wiki/Event_1", null, null, null);
+        FakeEventSource local = new FakeEventSource();
+        FakeEventSource remote = new FakeEventSource(Collections.singletonList(event));
+
+        CountDownLatch introRequested = new CountDownLatch(1);
+        CountDownLatch introReleased = new CountDownLatch(1);
+        EventRepositoryImpl repository = newRepository(remote, local, new WikipediaIntroSource() {
+            @Override
+            public Result<String> getArticleIntro(String articleURL) {
+                introRequested.countDown();
+                try {
+                    introReleased.await();
+                } catch (InterruptedException e) {
+                    return Result.error(e);
+                }
+                return Result.success("Intro of event 1");
+            }
+
+            @Override
+            public Result<Map<String, String>> getArticleIntros(Collection<String> articleURLs) {
+                throw new UnsupportedOperationException();
+            }
+        });
+
+        CountDownLatch introFetched = new CountDownLatch(1);
+        List<Event> eventsWithIntro = new ArrayList<>();
+        Result<Optional<Event>> result = repository.getDetailedEvent("Q1", true, eventWithIntro -> {
+            eventsWithIntro.add(eventWithIntro);
+            introFetched.countDown();
+        });
+
+        // Returned while the intro is still being fetched
+        assertEquals(Optional.of(event), result.get());
+        assertTrue(introRequested.await(1, TimeUnit.SECONDS));
+
+        introReleased.countDown();
+        assertTrue(introFetched.await(1, TimeUnit.SECONDS));
+        Event expectedEvent = event.withWikipediaIntro("Intro of event 1");
+        assertEquals(Collections.singletonList(expectedEvent), eventsWithIntro);
+        assertEquals(Optional.of(expectedEvent), local.getEvent("Q1", true));
+    }
+
+    @Test
+    public void star_invalidatesCachedFavorites() {
+        FakeEventSource local = new FakeEventSource(syntheticEvents(0, 12, "Event "));
+        EventRepositoryImpl repository = newRepository(
+                new FakeEventSource(), local, new EventCache()
+        );
+
+        assertTrue(repository.getFavorites().isEmpty());
+        assertFalse(repository.isFavorite("Q1"));
+
+        repository.star("Q1");
+
+        assertEquals(1, repository.getFavorites().size());
+        assertTrue(repository.isFavorite("Q1"));
+    }
+
+    @Test
+    public void getEvent_refresh_invalidatesOnlyTheMonthOfTheEvent() {
+        FakeEventSource local = new FakeEventSource(syntheticEvents(0, 24, "Event "));
+        for (int month = 1; month <= 3; month++) {
+            local.putSyncMetadata(new SyncMetadata(
+                    SyncMetadata.month(month),
+                    System.currentTimeMillis(),
+                    SyncMetadata.Outcome.SUCCESS,
+                    null,
+                    null,
+                    null,
+                    null
+            ));
+        }
+        // Q0 moves from January to March
+        Event movedEvent = new Event("Q0", "Renamed event 0", MonthDay.of(3, 1));
+        FakeEventSource remote = new FakeEventSource(Collections.singletonList(movedEvent));
+        EventCache cache = new EventCache();
+        EventRepositoryImpl repository = newRepository(remote, local, cache);
+
+        for (int month = 1; month <= 3; month++) repository.getEventsByMonth(month, false);
+        repository.getEvent("Q0", false, true);
+
+        assertEquals(3, cache.getMissCount());
+        assertEquals(1, repository.getEventsByMonth(1, false).get().size());
+        assertEquals(2, repository.getEventsByMonth(2, false).get().size());
+        assertTrue(repository.getEventsByMonth(3, false).get().contains(movedEvent));
+        assertEquals(5, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void getEventsByMonth_staleWhileRevalidate_returnsLocalThenRemoteEvents()
+            throws InterruptedException {
+        List<Event> localEvents = syntheticEvents(0, 24, "Event ");
+        List<Event> remoteEvents = syntheticEvents(0, 24, "Renamed event ");
+        FakeEventSource local = new FakeEventSource(localEvents);
+        FakeEventSource remote = new FakeEventSource(remoteEvents);
+        EventRepositoryImpl repository = newRepository(remote, local, new EventCache());
+
+        CountDownLatch revalidated = new CountDownLatch(1);
+        List<List<Event>> revalidatedEvents = new ArrayList<>();
+        Result<List<Event>> result = repository.getEventsByMonth(1, events -> {
+            revalidatedEvents.add(events);
+            revalidated.countDown();
+        });
+
+        assertEquals(local.getEventsByMonth(1), result.get());
+        assertTrue(revalidated.await(1, TimeUnit.SECONDS));
+        assertEquals(remote.getEventsByMonth(1), revalidatedEvents.get(0));
+        assertEquals(remote.getEventsByMonth(1), local.getEventsByMonth(1));
+    }
+
+    @Test
+    public void getEventsByMonth_beforeFirstSync_returnsSnapshotThenRemoteEvents()
+            throws InterruptedException {
+        FakeEventSource snapshot = new FakeEventSource(syntheticEvents(0, 24, "Event "));
+        List<Event> remoteEvents = syntheticEvents(0, 24, "Renamed event ");
+        FakeEventSource local = new FakeEventSource();
+        FakeEventSource remote = new FakeEventSource(remoteEvents);
+        EventRepositoryImpl repository = newRepository(remote, local, snapshot);
+
+        CountDownLatch revalidated = new CountDownLatch(1);
+        List<List<Event>> revalidatedEvents = new ArrayList<>();
+        Result<List<Event>> result = repository.getEventsByMonth(1, events -> {
+            revalidatedEvents.add(events);
+            revalidated.countDown();
+        });
+
+        assertEquals(snapshot.getEventsByMonth(1), result.get());
+        assertTrue(revalidated.await(1, TimeUnit.SECONDS));
+        assertEquals(remote.getEventsByMonth(1), revalidatedEvents.get(0));
+        assertEquals(remote.getEventsByMonth(1), local.getEventsByMonth(1));
+    }
+
+    @Test
+    public void getEventsByMonth_afterFirstSync_ignoresSnapshot() {
+        FakeEventSource snapshot = new FakeEventSource(syntheticEvents(0, 24, "Event "));
+        FakeEventSource local = new FakeEventSource();
+        local.putSyncMetadata(new SyncMetadata(
+                SyncMetadata.catalogue(), 0, SyncMetadata.Outcome.SUCCESS, null, 1L, null, null
+        ));
+        FakeEventSource remote = new FakeEventSource(syntheticEvents(0, 24, "Renamed event "));
+        EventRepositoryImpl repository = newRepository(remote, local, snapshot);
+
+        Result<List<Event>> result = repository.getEventsByMonth(1, events -> {});
+
+        assertTrue(result.isSuccess());
+        assertEquals(remote.getEventsByMonth(1), result.get());
+    }
+}
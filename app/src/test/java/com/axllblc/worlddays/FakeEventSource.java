@@ -0,0 +1,163 @@
+package com.axllblc.worlddays;
+
+import com.axllblc.worlddays.data.Event;
+import com.axllblc.worlddays.data.SyncMetadata;
+import com.axllblc.worlddays.data.source.ReadWriteEventSource;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory implementation of {@link ReadWriteEventSource}, for tests.
+ */
+public class FakeEventSource implements ReadWriteEventSource {
+    final Map<String, Event> events = new LinkedHashMap<>();
+    final Set<String> favorites = new HashSet<>();
+    final Map<String, SyncMetadata> syncMetadata = new HashMap<>();
+
+    public FakeEventSource() {}
+
+    public FakeEventSource(List<Event> events) {
+        insertAll(events);
+    }
+
+
+    // ReadableEventSource implementation
+
+    @Override
+    public synchronized Optional<Event> getEvent(String id, boolean withDetails) {
+        Event event = events.get(id);
+        if (event == null || (withDetails && !event.isDetailed())) return Optional.empty();
+        return Optional.of(event);
+    }
+
+    @Override
+    public synchronized List<Event> getEvents(Collection<String> ids, boolean withDetails) {
+        return new HashSet<>(ids).stream()
+                .map(id -> getEvent(id, withDetails))
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public synchronized List<Event> getAll() {
+        return new ArrayList<>(events.values());
+    }
+
+    @Override
+    public synchronized List<Event> getEventsByName(String str) {
+        return events.values().stream()
+                .filter(event -> event.getTitle().toLowerCase().contains(str.toLowerCase()))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public synchronized List<Event> getEventsByMonth(int month) {
+        return events.values().stream()
+                .filter(event -> event.getMonthDay().getMonthValue() == month)
+                .collect(Collectors.toList());
+    }
+
+
+    // WritableEventSource implementation
+
+    @Override
+    public synchronized void insert(Event event) {
+        if (events.containsKey(event.getId())) throw new IllegalStateException(event.getId());
+        events.put(event.getId(), event);
+    }
+
+    @Override
+    public synchronized void insertAll(List<Event> events) {
+        events.forEach(this::insert);
+    }
+
+    @Override
+    public synchronized void update(Event event) {
+        events.put(event.getId(), event);
+    }
+
+    @Override
+    public synchronized void delete(Event event) {
+        delete(event.getId());
+    }
+
+    @Override
+    public synchronized void delete(String eventId) {
+        events.remove(eventId);
+        favorites.remove(eventId);
+    }
+
+    @Override
+    public synchronized void deleteAll() {
+        events.clear();
+        favorites.clear();
+        syncMetadata.clear();
+    }
+
+    @Override
+    public synchronized void applyChanges(Collection<String> idsToDelete,
+                                          List<Event> eventsToUpdate,
+                                          List<Event> eventsToInsert) {
+        idsToDelete.forEach(this::delete);
+        eventsToUpdate.forEach(this::update);
+        eventsToInsert.forEach(this::insert);
+    }
+
+
+    // FavoriteEventSource implementation
+
+    @Override
+    public synchronized List<Event> getFavorites() {
+        return events.values().stream()
+                .filter(event -> favorites.contains(event.getId()))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public synchronized boolean isFavorite(String eventId) {
+        return favorites.contains(eventId);
+    }
+
+    @Override
+    public synchronized void star(String eventId) {
+        if (events.containsKey(eventId)) favorites.add(eventId);
+    }
+
+    @Override
+    public synchronized void unstar(String eventId) {
+        favorites.remove(eventId);
+    }
+
+    @Override
+    public synchronized void unstarAll() {
+        favorites.clear();
+    }
+
+
+    // SyncMetadataSource implementation
+
+    @Override
+    public synchronized Optional<SyncMetadata> getSyncMetadata(String queryKey) {
+        return Optional.ofNullable(syncMetadata.get(queryKey));
+    }
+
+    @Override
+    public synchronized void putSyncMetadata(SyncMetadata syncMetadata) {
+        this.syncMetadata.put(syncMetadata.getQueryKey(), syncMetadata);
+    }
+
+    @Override
+    public synchronized void deleteAllSyncMetadata() {
+        syncMetadata.clear();
+    }
+}
@@ -0,0 +1,112 @@
+package com.axllblc.worlddays.data.source;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.axllblc.worlddays.data.Event;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.MonthDay;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+public class SnapshotEventSourceTest {
+    static Event event1 = new Event(
+            "Q5305947",
+            "International Day of Happiness",
+            MonthDay.of(3, 20)
+    );
+
+    static Event event2 = new Event(
+            "Q2603487",
+            "World Day of Peace",
+            MonthDay.of(1, 1)
+    );
+
+    static Event event3 = new Event(
+            "Q104850441",
+            "World Logic Day",
+            MonthDay.of(1, 14)
+    );
+
+    static Event leapDayEvent = new Event(
+            "Q1",
+            "Journée du 29 février",
+            MonthDay.of(2, 29)
+    );
+
+    /**
+     * Reads {@code catalogue-test.bin}, generated from
+     * {@code src/test/snapshot/catalogue-test.json} by the {@code generateTestCatalogueSnapshots}
+     * task, with the encoder of the bundled snapshots. It contains the four events above;
+     * {@link #event1} is also on March 21, which is dropped.
+     */
+    static SnapshotEventSource newSource() throws IOException {
+        Path snapshot = Paths.get(
+                System.getProperty("testCatalogueSnapshotDir"), "catalogue-test.bin"
+        );
+        return new SnapshotEventSource(ByteBuffer.wrap(Files.readAllBytes(snapshot)));
+    }
+
+    @Test
+    public void getAll_returnsEventsSortedByDate() throws IOException {
+        SnapshotEventSource source = newSource();
+
+        assertEquals(Arrays.asList(event2, event3, leapDayEvent, event1), source.getAll());
+    }
+
+    @Test
+    public void getEvent_findsEventById() throws IOException {
+        SnapshotEventSource source = newSource();
+
+        assertEquals(Optional.of(event1), source.getEvent(event1.getId(), false));
+        assertEquals(Optional.of(event3), source.getEvent(event3.getId(), false));
+        assertFalse(source.getEvent("Q42", false).isPresent());
+        assertFalse(source.getEvent("not an ID", false).isPresent());
+    }
+
+    @Test
+    public void getEvent_withDetails_returnsEmptyOptional() throws IOException {
+        SnapshotEventSource source = newSource();
+
+        assertFalse(source.getEvent(event1.getId(), true).isPresent());
+    }
+
+    @Test
+    public void getEvents_returnsExistingEvents() throws IOException {
+        SnapshotEventSource source = newSource();
+
+        List<Event> events = source.getEvents(
+                Arrays.asList(event1.getId(), "Q42", event2.getId()), false
+        );
+
+        assertEquals(Arrays.asList(event1, event2), events);
+    }
+
+    @Test
+    public void getEventsByMonth_usesDayIndex() throws IOException {
+        SnapshotEventSource source = newSource();
+
+        assertEquals(Arrays.asList(event2, event3), source.getEventsByMonth(1));
+        assertEquals(Collections.singletonList(leapDayEvent), source.getEventsByMonth(2));
+        assertEquals(Collections.singletonList(event1), source.getEventsByMonth(3));
+        assertTrue(source.getEventsByMonth(12).isEmpty());
+    }
+
+    @Test
+    public void getEventsByName_decodesStringPool() throws IOException {
+        SnapshotEventSource source = newSource();
+
+        assertEquals(Arrays.asList(event2, event3), source.getEventsByName("WORLD"));
+        assertEquals(Collections.singletonList(leapDayEvent), source.getEventsByName("février"));
+    }
+}
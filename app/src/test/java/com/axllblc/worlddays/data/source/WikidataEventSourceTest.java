@@ -0,0 +1,227 @@
+package com.axllblc.worlddays.data.source;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import com.axllblc.worlddays.data.Event;
+import com.axllblc.worlddays.data.source.http.RetryInterceptor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.time.MonthDay;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Cache;
+import okhttp3.CacheControl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+/**
+ * Tests of {@link WikidataEventSource#getAllPartitioned(int)}, and of the fallback of
+ * {@link WikidataEventSource#getAll()} to it, against a local server. Month queries are answered
+ * by {@link PartitionedEventSource}, so that no response body is parsed.
+ */
+public class WikidataEventSourceTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    MockWebServer server;
+
+    /**
+     * Sends all the requests to {@link #server}.
+     */
+    Interceptor redirect = chain -> chain.proceed(chain.request().newBuilder()
+            .url(server.url("/sparql?" + chain.request().url().encodedQuery()))
+            .build());
+
+    /**
+     * Month query of {@link PartitionedEventSource}.
+     */
+    interface MonthQuery {
+        List<Event> getEventsByMonth(int month) throws Exception;
+    }
+
+    /**
+     * Event source whose month queries are answered by a {@link MonthQuery}, without any request.
+     */
+    static class PartitionedEventSource extends WikidataEventSource {
+        final List<Integer> months = Collections.synchronizedList(new ArrayList<>());
+        final MonthQuery monthQuery;
+
+        PartitionedEventSource(OkHttpClient client, Executor executor, MonthQuery monthQuery) {
+            super(client, executor);
+            this.monthQuery = monthQuery;
+        }
+
+        /**
+         * Creates an event source whose month queries return one event per month.
+         */
+        PartitionedEventSource(OkHttpClient client) {
+            this(client, Runnable::run, WikidataEventSourceTest::eventOfMonth);
+        }
+
+        @Override
+        public List<Event> getEventsByMonth(int month) throws Exception {
+            months.add(month);
+            return monthQuery.getEventsByMonth(month);
+        }
+    }
+
+    static List<Event> eventOfMonth(int month) {
+        return Collections.singletonList(
+                new Event("Q" + month, "Event " + month, MonthDay.of(month, 1))
+        );
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(12);
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void getAll_serverTimeout_fetchesMonthByMonth() throws Exception {
+        OkHttpClient client = new OkHttpClient.Builder().addInterceptor(redirect).build();
+        server.enqueue(new MockResponse().setResponseCode(504));
+        PartitionedEventSource source = new PartitionedEventSource(client);
+
+        List<Event> events = source.getAll();
+
+        assertEquals(12, events.size());
+        assertEquals(12, source.months.size());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void getAll_clientTimeout_fetchesMonthByMonthAfterOneAttempt() throws Exception {
+        // As the client of the application, with a shorter read timeout
+        OkHttpClient client = new OkHttpClient.Builder()
+                .readTimeout(100, TimeUnit.MILLISECONDS)
+                .addInterceptor(new RetryInterceptor())
+                .addInterceptor(redirect)
+                .build();
+        server.enqueue(new MockResponse().setHeadersDelay(1, TimeUnit.SECONDS));
+        PartitionedEventSource source = new PartitionedEventSource(client);
+
+        List<Event> events = source.getAll();
+
+        assertEquals(12, events.size());
+        assertEquals(12, source.months.size());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void getAll_offline_doesNotFetchMonthByMonth() throws IOException {
+        // As the client of the application while offline: requests are answered from the cache
+        // only, and fail with a 504 response which does not come from the server
+        OkHttpClient client = new OkHttpClient.Builder()
+                .cache(new Cache(temporaryFolder.newFolder("http"), 1024 * 1024))
+                .addInterceptor(chain -> chain.proceed(chain.request().newBuilder()
+                        .cacheControl(CacheControl.FORCE_CACHE)
+                        .build()))
+                .addInterceptor(redirect)
+                .build();
+        PartitionedEventSource source = new PartitionedEventSource(client);
+
+        NotSuccessfulResponseException e =
+                assertThrows(NotSuccessfulResponseException.class, source::getAll);
+
+        assertEquals(-1, e.getCode());
+        assertEquals(Collections.emptyList(), source.months);
+        assertEquals(0, server.getRequestCount());
+        //noinspection DataFlowIssue
+        client.cache().close();
+    }
+
+    @Test
+    public void getAllPartitioned_returnsEventsSortedByDateWithoutDuplicates() throws Exception {
+        // Q1 has a day in each month: only its first one is kept
+        PartitionedEventSource source = new PartitionedEventSource(
+                new OkHttpClient(), pool, month -> Arrays.asList(
+                        new Event("Q1", "Event 1", MonthDay.of(month, 1)),
+                        new Event("Q" + (month + 100), "Event " + month, MonthDay.of(month, 2))
+                )
+        );
+
+        List<Event> events = source.getAllPartitioned(3);
+
+        assertEquals(13, events.size());
+        assertEquals(new Event("Q1", "Event 1", MonthDay.of(1, 1)), events.get(0));
+        for (int i = 1; i < events.size(); i++) {
+            assertEquals(i, events.get(i).getMonthDay().getMonthValue());
+        }
+    }
+
+    @Test
+    public void getAllPartitioned_boundsConcurrentQueries() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        PartitionedEventSource source = new PartitionedEventSource(
+                new OkHttpClient(), pool, month -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    Thread.sleep(20);
+                    running.decrementAndGet();
+                    return eventOfMonth(month);
+                }
+        );
+
+        assertEquals(12, source.getAllPartitioned(2).size());
+        assertTrue(maxRunning.get() <= 2);
+    }
+
+    @Test
+    public void getAllPartitioned_callerThreadIsPartOfThePool_doesNotBlock() throws Exception {
+        ExecutorService singleThread = Executors.newSingleThreadExecutor();
+        try {
+            PartitionedEventSource source = new PartitionedEventSource(
+                    new OkHttpClient(), singleThread, WikidataEventSourceTest::eventOfMonth
+            );
+
+            // All the month queries are queued behind the task which waits for them
+            List<Event> events = singleThread.submit(() -> source.getAllPartitioned(3))
+                    .get(5, TimeUnit.SECONDS);
+
+            assertEquals(12, events.size());
+        } finally {
+            singleThread.shutdownNow();
+        }
+    }
+
+    @Test
+    public void getAllPartitioned_failedMonth_throwsItsError() {
+        NotSuccessfulResponseException error = new NotSuccessfulResponseException("Error", 503);
+        PartitionedEventSource source = new PartitionedEventSource(
+                new OkHttpClient(), Runnable::run, month -> {
+                    if (month == 5) throw error;
+                    return eventOfMonth(month);
+                }
+        );
+
+        assertSame(error, assertThrows(Exception.class, () -> source.getAllPartitioned(3)));
+    }
+}
@@ -0,0 +1,94 @@
+package com.axllblc.worlddays.data.source;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.axllblc.worlddays.data.Result;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+public class WikipediaIntroSourceImplTest {
+    MockWebServer server;
+    /**
+     * Hosts of the requests, before they are sent to {@link #server}.
+     */
+    List<String> hosts = new ArrayList<>();
+    OkHttpClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        client = new OkHttpClient.Builder()
+                .addInterceptor(chain -> {
+                    hosts.add(chain.request().url().host());
+                    return chain.proceed(chain.request().newBuilder()
+                            .url(server.url("/w/api.php?" + chain.request().url().encodedQuery()))
+                            .build());
+                })
+                .build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void mapIntrosToTitles_followsNormalizationsAndRedirects() throws JSONException {
+        JSONObject query = new JSONObject("{"
+                + "\"normalized\": [{\"from\": \"Day_of_Peace\", \"to\": \"Day of Peace\"}],"
+                + "\"redirects\": [{\"from\": \"Day of Peace\", \"to\": \"International Day of Peace\"}],"
+                + "\"pages\": ["
+                + "  {\"title\": \"International Day of Peace\", \"extract\": \"Peace.\"},"
+                + "  {\"title\": \"World Logic Day\", \"extract\": \"Logic.\"},"
+                + "  {\"title\": \"Missing article\", \"missing\": true}"
+                + "]}");
+
+        Map<String, String> intros = WikipediaIntroSourceImpl.mapIntrosToTitles(
+                query, Arrays.asList("Day_of_Peace", "World Logic Day", "Missing article")
+        );
+
+        Map<String, String> expected = new HashMap<>();
+        expected.put("Day_of_Peace", "Peace.");
+        expected.put("World Logic Day", "Logic.");
+        assertEquals(expected, intros);
+    }
+
+    @Test
+    public void getArticleIntros_acceptsWikiIdsWithHyphens() {
+        server.enqueue(new MockResponse().setBody(
+                "{\"query\": {"
+                        + "\"normalized\": [{\"from\": \"Peace_Day\", \"to\": \"Peace Day\"}],"
+                        + "\"pages\": [{\"title\": \"Peace Day\", \"extract\": \"Peace.\"}]}}"
+        ));
+        server.enqueue(new MockResponse().setBody(
+                "{\"query\": {\"pages\": [{\"title\": \"Hô-pêng\", \"extract\": \"Hô-pêng.\"}]}}"
+        ));
+        String enURL = "https://en.wikipedia.org/wiki/Peace_Day";
+        String zhMinNanURL = "https://zh-min-nan.wikipedia.org/wiki/H%C3%B4-p%C3%AAng";
+
+        Result<Map<String, String>> result = new WikipediaIntroSourceImpl(client)
+                .getArticleIntros(Arrays.asList(enURL, zhMinNanURL));
+
+        assertTrue(result.isSuccess());
+        assertEquals("Peace.", result.get().get(enURL));
+        assertEquals("Hô-pêng.", result.get().get(zhMinNanURL));
+        assertEquals(Arrays.asList("en.wikipedia.org", "zh-min-nan.wikipedia.org"), hosts);
+    }
+}
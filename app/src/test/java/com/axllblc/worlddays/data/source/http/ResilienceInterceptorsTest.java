@@ -0,0 +1,231 @@
+package com.axllblc.worlddays.data.source.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+/**
+ * Tests of {@link RetryInterceptor}, {@link CircuitBreakerInterceptor} and
+ * {@link RateLimitInterceptor}, against a local server which injects throttling.
+ */
+public class ResilienceInterceptorsTest {
+    MockWebServer server;
+    /**
+     * Fake time, in milliseconds. Advanced by {@link #sleeper}.
+     */
+    long now = 1_000_000;
+    List<Long> sleeps = new ArrayList<>();
+    Sleeper sleeper = millis -> {
+        sleeps.add(millis);
+        now += millis;
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    RetryInterceptor newRetryInterceptor(int maxAttempts) {
+        return new RetryInterceptor(maxAttempts, 500, 10_000, new Random(42), sleeper, () -> now);
+    }
+
+    int get(OkHttpClient client) throws IOException {
+        Request request = new Request.Builder().url(server.url("/sparql")).build();
+        try (Response response = client.newCall(request).execute()) {
+            return response.code();
+        }
+    }
+
+    static MockResponse throttled(String retryAfter) {
+        return new MockResponse().setResponseCode(429).addHeader("Retry-After", retryAfter);
+    }
+
+    @Test
+    public void retry_honorsRetryAfter() throws IOException {
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(newRetryInterceptor(3))
+                .build();
+        server.enqueue(throttled("2"));
+        server.enqueue(new MockResponse().setBody("events"));
+
+        assertEquals(200, get(client));
+        assertEquals(2, server.getRequestCount());
+        assertEquals(Collections.singletonList(2000L), sleeps);
+    }
+
+    @Test
+    public void retry_usesJitteredExponentialBackoff() throws IOException {
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(newRetryInterceptor(4))
+                .build();
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody("events"));
+
+        assertEquals(200, get(client));
+        assertEquals(3, sleeps.size());
+        for (int i = 0; i < sleeps.size(); i++) {
+            long ceiling = 500L << i;
+            assertTrue(sleeps.get(i) >= 0 && sleeps.get(i) < ceiling);
+        }
+    }
+
+    @Test
+    public void retry_givesUpAfterMaxAttempts() throws IOException {
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(newRetryInterceptor(2))
+                .build();
+        server.enqueue(throttled("0"));
+        server.enqueue(throttled("0"));
+        server.enqueue(new MockResponse().setBody("events"));
+
+        assertEquals(429, get(client));
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void retry_doesNotWaitLongerThanMaxDelay() throws IOException {
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(newRetryInterceptor(3))
+                .build();
+        server.enqueue(throttled("3600"));
+
+        assertEquals(429, get(client));
+        assertTrue(sleeps.isEmpty());
+    }
+
+    @Test
+    public void retry_doesNotRetryClientErrors() throws IOException {
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(newRetryInterceptor(3))
+                .build();
+        server.enqueue(new MockResponse().setResponseCode(400));
+
+        assertEquals(400, get(client));
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void retry_doesNotRetryGatewayTimeoutWithoutRetryAfter() throws IOException {
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(newRetryInterceptor(3))
+                .build();
+        server.enqueue(new MockResponse().setResponseCode(504));
+        server.enqueue(new MockResponse().setResponseCode(504).addHeader("Retry-After", "1"));
+        server.enqueue(new MockResponse().setBody("events"));
+
+        assertEquals(504, get(client));
+        assertEquals(200, get(client));
+        assertEquals(3, server.getRequestCount());
+        assertEquals(Collections.singletonList(1000L), sleeps);
+    }
+
+    @Test
+    public void retry_doesNotRetryTimeouts() {
+        OkHttpClient client = new OkHttpClient.Builder()
+                .readTimeout(100, TimeUnit.MILLISECONDS)
+                .addInterceptor(newRetryInterceptor(3))
+                .build();
+        server.enqueue(new MockResponse().setHeadersDelay(1, TimeUnit.SECONDS));
+
+        assertThrows(SocketTimeoutException.class, () -> get(client));
+        assertEquals(1, server.getRequestCount());
+        assertTrue(sleeps.isEmpty());
+    }
+
+    @Test
+    public void circuitBreaker_failsFastWhileOpen_thenRecovers() throws IOException {
+        CircuitBreakerInterceptor circuitBreaker =
+                new CircuitBreakerInterceptor(2, 30_000, () -> now);
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addNetworkInterceptor(circuitBreaker)
+                .build();
+        String host = server.url("/").host();
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody("events"));
+
+        assertEquals(503, get(client));
+        assertEquals(503, get(client));
+        assertTrue(circuitBreaker.isOpen(host));
+
+        // Open: the request is not sent
+        assertThrows(CircuitBreakerInterceptor.CircuitOpenException.class, () -> get(client));
+        assertEquals(2, server.getRequestCount());
+
+        // Half-open: the trial request succeeds, and closes the circuit
+        now += 30_000;
+        assertEquals(200, get(client));
+        assertFalse(circuitBreaker.isOpen(host));
+    }
+
+    @Test
+    public void circuitBreaker_failedTrial_opensAgain() throws IOException {
+        CircuitBreakerInterceptor circuitBreaker =
+                new CircuitBreakerInterceptor(1, 30_000, () -> now);
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addNetworkInterceptor(circuitBreaker)
+                .build();
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(503));
+
+        assertEquals(503, get(client));
+        now += 30_000;
+        assertEquals(503, get(client));
+
+        assertThrows(CircuitBreakerInterceptor.CircuitOpenException.class, () -> get(client));
+    }
+
+    @Test
+    public void retry_stopsWhenCircuitOpens() throws IOException {
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(newRetryInterceptor(5))
+                .addNetworkInterceptor(new CircuitBreakerInterceptor(2, 30_000, () -> now))
+                .build();
+        for (int i = 0; i < 5; i++) server.enqueue(new MockResponse().setResponseCode(503));
+
+        assertThrows(CircuitBreakerInterceptor.CircuitOpenException.class, () -> get(client));
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void rateLimiter_waitsForTokens() throws IOException {
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addNetworkInterceptor(new RateLimitInterceptor(2, 1, sleeper, () -> now))
+                .build();
+        for (int i = 0; i < 3; i++) server.enqueue(new MockResponse().setBody("events"));
+
+        // Burst of 2 requests, then 1 request per second
+        assertEquals(200, get(client));
+        assertEquals(200, get(client));
+        assertTrue(sleeps.isEmpty());
+        assertEquals(200, get(client));
+        assertEquals(1000, sleeps.stream().mapToLong(Long::longValue).sum());
+    }
+}
@@ -0,0 +1,146 @@
+package com.axllblc.worlddays.di;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class OkHttpModuleTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    MockWebServer server;
+    OkHttpClient client;
+    boolean online = true;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        client = OkHttpModule.newOkHttpClient(temporaryFolder.newFolder("http"), () -> online);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+        //noinspection DataFlowIssue
+        client.cache().close();
+    }
+
+    Response get() throws IOException {
+        Request request = new Request.Builder().url(server.url("/sparql?query=q")).build();
+        return client.newCall(request).execute();
+    }
+
+    String getBody() throws IOException {
+        try (Response response = get()) {
+            //noinspection DataFlowIssue
+            return response.body().string();
+        }
+    }
+
+    @Test
+    public void freshResponse_isServedFromCache() throws IOException {
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control", "max-age=300")
+                .setBody("events"));
+
+        assertEquals("events", getBody());
+        try (Response response = get()) {
+            assertEquals("events", response.body().string());
+            assertNotNull(response.cacheResponse());
+            assertNull(response.networkResponse());
+        }
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void staleResponse_isRevalidatedWithETag() throws IOException, InterruptedException {
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control", "no-cache")
+                .addHeader("ETag", "\"v1\"")
+                .setBody("events"));
+        server.enqueue(new MockResponse().setResponseCode(304));
+
+        assertEquals("events", getBody());
+        try (Response response = get()) {
+            assertEquals("events", response.body().string());
+            assertNotNull(response.cacheResponse());
+            assertNotNull(response.networkResponse());
+        }
+
+        server.takeRequest();
+        RecordedRequest conditionalRequest = server.takeRequest();
+        assertEquals("\"v1\"", conditionalRequest.getHeader("If-None-Match"));
+    }
+
+    @Test
+    public void staleResponse_isRevalidatedWithLastModified()
+            throws IOException, InterruptedException {
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control", "no-cache")
+                .addHeader("Last-Modified", "Wed, 20 Mar 2024 00:00:00 GMT")
+                .setBody("events"));
+        server.enqueue(new MockResponse().setResponseCode(304));
+
+        assertEquals("events", getBody());
+        assertEquals("events", getBody());
+
+        server.takeRequest();
+        RecordedRequest conditionalRequest = server.takeRequest();
+        assertEquals("Wed, 20 Mar 2024 00:00:00 GMT",
+                conditionalRequest.getHeader("If-Modified-Since"));
+    }
+
+    @Test
+    public void notCacheableResponse_isFetchedAgain() throws IOException {
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control", "no-store")
+                .setBody("events"));
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control", "no-store")
+                .setBody("updated events"));
+
+        assertEquals("events", getBody());
+        assertEquals("updated events", getBody());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void offline_staleResponse_isServedFromCache() throws IOException {
+        server.enqueue(new MockResponse()
+                .addHeader("Cache-Control", "max-age=0")
+                .addHeader("ETag", "\"v1\"")
+                .setBody("events"));
+
+        assertEquals("events", getBody());
+
+        online = false;
+        assertEquals("events", getBody());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void offline_notCachedRequest_fails() throws IOException {
+        online = false;
+
+        try (Response response = get()) {
+            assertEquals(504, response.code());
+        }
+        assertEquals(0, server.getRequestCount());
+    }
+}